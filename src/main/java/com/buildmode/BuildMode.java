@@ -2,9 +2,16 @@ package com.buildmode;
 
 import com.buildmode.commands.BuildModeCommand;
 import com.buildmode.listeners.BuildModeListener;
+import com.buildmode.listeners.PlacementListener;
+import com.buildmode.managers.InventoryAuditor;
+import com.buildmode.managers.PlacementIndex;
+import com.buildmode.managers.RollbackManager;
 import com.buildmode.managers.SessionManager;
 import com.buildmode.placeholders.BuildModePlaceholders;
 import com.buildmode.utils.ConfigManager;
+import com.buildmode.utils.ConfigSnapshot;
+import com.buildmode.utils.ConfigWatcher;
+import com.buildmode.utils.FeedbackDispatcher;
 import com.buildmode.utils.UIManager;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -15,6 +22,11 @@ public class BuildMode extends JavaPlugin {
     private ConfigManager configManager;
     private SessionManager sessionManager;
     private UIManager uiManager;
+    private FeedbackDispatcher feedbackDispatcher;
+    private InventoryAuditor inventoryAuditor;
+    private PlacementIndex placementIndex;
+    private RollbackManager rollbackManager;
+    private ConfigWatcher configWatcher;
     
     @Override
     public void onEnable() {
@@ -24,17 +36,36 @@ public class BuildMode extends JavaPlugin {
         saveDefaultConfig();
         configManager = new ConfigManager(this);
         
+        // Initialize feedback dispatcher
+        feedbackDispatcher = new FeedbackDispatcher(this);
+        
+        // Initialize placement index
+        placementIndex = new PlacementIndex(this);
+        
         // Initialize session manager
         sessionManager = new SessionManager(this);
         
         // Initialize UI manager
         uiManager = new UIManager(this);
         
+        // Initialize rollback manager
+        rollbackManager = new RollbackManager(this);
+        
+        // Initialize inventory auditor
+        inventoryAuditor = new InventoryAuditor(this);
+        
         // Register commands
         getCommand("buildmode").setExecutor(new BuildModeCommand(this));
         
         // Register listeners
         getServer().getPluginManager().registerEvents(new BuildModeListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlacementListener(this), this);
+        
+        // Watch config.yml for changes
+        if (getConfig().getBoolean("watch-config", true)) {
+            configWatcher = new ConfigWatcher(this);
+            configWatcher.start();
+        }
         
         // Register PlaceholderAPI expansion if available
         if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
@@ -58,11 +89,31 @@ public class BuildMode extends JavaPlugin {
     
     @Override
     public void onDisable() {
+        // Stop watching the configuration
+        if (configWatcher != null) {
+            configWatcher.stop();
+        }
+        
+        // Stop running rollbacks
+        if (rollbackManager != null) {
+            rollbackManager.cleanup();
+        }
+        
+        // Stop the inventory audit
+        if (inventoryAuditor != null) {
+            inventoryAuditor.cleanup();
+        }
+        
         // Save active sessions
         if (sessionManager != null) {
             sessionManager.saveAllSessions();
         }
         
+        // Save placements of loaded chunks
+        if (placementIndex != null) {
+            placementIndex.saveAll();
+        }
+        
         // Clean up UI elements
         if (uiManager != null) {
             uiManager.cleanup();
@@ -107,14 +158,53 @@ public class BuildMode extends JavaPlugin {
         return uiManager;
     }
     
+    /**
+     * Gets the feedback dispatcher.
+     * 
+     * @return The feedback dispatcher
+     */
+    public FeedbackDispatcher getFeedbackDispatcher() {
+        return feedbackDispatcher;
+    }
+    
+    /**
+     * Gets the placement index.
+     * 
+     * @return The placement index
+     */
+    public PlacementIndex getPlacementIndex() {
+        return placementIndex;
+    }
+    
+    /**
+     * Gets the rollback manager.
+     * 
+     * @return The rollback manager
+     */
+    public RollbackManager getRollbackManager() {
+        return rollbackManager;
+    }
+    
     /**
      * Reloads the plugin configuration.
      */
     public void reload() {
-        reloadConfig();
-        configManager.reload();
-        sessionManager.reload();
-        uiManager.reload();
+        ConfigSnapshot previous = configManager.reload();
+        applyConfig(previous);
         getLogger().info("BuildMode configuration reloaded!");
     }
+    
+    /**
+     * Hands a newly published configuration to the managers. Each of them only acts on
+     * the settings that changed.
+     * 
+     * @param previous The configuration before the change
+     */
+    public void applyConfig(ConfigSnapshot previous) {
+        ConfigSnapshot current = configManager.getSnapshot();
+        sessionManager.reload(previous, current);
+        uiManager.reload(previous, current);
+        feedbackDispatcher.reload();
+        inventoryAuditor.reload();
+    }
 }
@@ -4,6 +4,7 @@ import com.buildmode.BuildMode;
 import com.buildmode.models.BuildSession;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * API for the BuildMode plugin.
@@ -36,7 +37,9 @@ public class BuildModeAPI {
     }
     
     /**
-     * Gets a player's build session.
+     * Gets a player's build session. The session's saved items are only held in
+     * memory while the player is online; check {@link BuildSession#isSavedItemsLoaded()}
+     * before reading them, the item getters return null otherwise.
      * 
      * @param uuid The player's UUID
      * @return The build session, or null if the player is not in build mode
@@ -64,4 +67,36 @@ public class BuildModeAPI {
         
         return session.getRemainingSeconds();
     }
+    
+    /**
+     * Gets the remaining cooldown of a player before they can start another session.
+     * 
+     * @param uuid The player's UUID
+     * @return The remaining cooldown in milliseconds, or 0 if the player is not on cooldown
+     */
+    public static long getRemainingCooldown(UUID uuid) {
+        if (plugin == null) {
+            return 0;
+        }
+        
+        return plugin.getSessionManager().getRemainingCooldown(uuid);
+    }
+    
+    /**
+     * Undoes the block changes of one of a player's build mode sessions. The blocks
+     * are restored over several ticks.
+     * 
+     * @param uuid The player's UUID
+     * @param sessionsAgo Which session to roll back, 1 for the most recent one
+     * @return A future completed with the number of restored blocks. It fails with an
+     *         {@link IllegalArgumentException} if the session is not logged, and with an
+     *         {@link IllegalStateException} if a rollback of the player is already running
+     */
+    public static CompletableFuture<Integer> rollbackSession(UUID uuid, int sessionsAgo) {
+        if (plugin == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("BuildMode is not enabled"));
+        }
+        
+        return plugin.getRollbackManager().rollback(uuid, sessionsAgo, null);
+    }
 }
@@ -2,8 +2,10 @@ package com.buildmode.commands;
 
 import com.buildmode.BuildMode;
 import com.buildmode.models.BuildSession;
+import com.buildmode.utils.TimingHistogram;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -15,6 +17,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
 
 /**
  * Command handler for the BuildMode plugin.
@@ -50,6 +54,12 @@ public class BuildModeCommand implements CommandExecutor, TabCompleter {
                 return handleReload(sender);
             case "list":
                 return handleList(sender);
+            case "memory":
+                return handleMemory(sender);
+            case "rollback":
+                return handleRollback(sender, args);
+            case "timings":
+                return handleTimings(sender, args);
             default:
                 sendHelp(sender);
                 return true;
@@ -153,6 +163,190 @@ public class BuildModeCommand implements CommandExecutor, TabCompleter {
         return true;
     }
     
+    /**
+     * Handles the memory subcommand.
+     * 
+     * @param sender The command sender
+     * @return True if the command was handled, false otherwise
+     */
+    private boolean handleMemory(CommandSender sender) {
+        if (!sender.hasPermission("buildmode.admin")) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return true;
+        }
+        
+        int loaded = 0;
+        int evicted = 0;
+        long loadedBytes = 0;
+        long evictedBytes = 0;
+        
+        for (BuildSession session : plugin.getSessionManager().getActiveSessions().values()) {
+            if (session.isSavedItemsLoaded()) {
+                loaded++;
+                loadedBytes += session.getSavedItemsSize();
+            } else {
+                evicted++;
+                evictedBytes += session.getSavedItemsSize();
+            }
+        }
+        
+        // Each evicted payload also frees its 16 byte array header
+        int sessions = loaded + evicted;
+        long averagePayload = sessions == 0 ? 0 : (loadedBytes + evictedBytes) / sessions + 16;
+        
+        sender.sendMessage(ChatColor.GREEN + "Build mode session memory:");
+        sender.sendMessage(ChatColor.YELLOW + "Online sessions: " + ChatColor.WHITE + loaded + 
+                " (" + formatBytes(loadedBytes) + " of saved items in memory)");
+        sender.sendMessage(ChatColor.YELLOW + "Offline sessions: " + ChatColor.WHITE + evicted + 
+                " (" + formatBytes(evictedBytes) + " of saved items evicted to disk)");
+        sender.sendMessage(ChatColor.YELLOW + "Heap saved per 1,000 offline sessions: " + ChatColor.WHITE + 
+                "~" + formatBytes(averagePayload * 1000));
+        sender.sendMessage(ChatColor.YELLOW + "Tracked placements in loaded chunks: " + ChatColor.WHITE + 
+                plugin.getPlacementIndex().getLoadedBlockCount() + 
+                " (" + formatBytes(plugin.getPlacementIndex().getMemoryUsage()) + ")");
+        
+        return true;
+    }
+    
+    /**
+     * Handles the rollback subcommand.
+     * 
+     * @param sender The command sender
+     * @param args The command arguments
+     * @return True if the command was handled, false otherwise
+     */
+    private boolean handleRollback(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("buildmode.admin")) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return true;
+        }
+        
+        if (args.length < 2 || args.length > 3) {
+            sender.sendMessage(ChatColor.RED + "Usage: /buildmode rollback <player> [session]");
+            return true;
+        }
+        
+        OfflinePlayer target = Bukkit.getOfflinePlayerIfCached(args[1]);
+        if (target == null) {
+            sender.sendMessage(ChatColor.RED + "Unknown player: " + args[1]);
+            return true;
+        }
+        
+        // Sessions are counted back from the newest one
+        int sessionsAgo = args.length == 3 ? parseSessionNumber(args[2]) : 1;
+        if (sessionsAgo < 1) {
+            sender.sendMessage(ChatColor.RED + "The session must be a positive number, 1 is the most recent session.");
+            return true;
+        }
+        
+        String name = target.getName() != null ? target.getName() : args[1];
+        sender.sendMessage(ChatColor.GREEN + "Rolling back build mode session " + sessionsAgo + " of " + name + "...");
+        
+        plugin.getRollbackManager().rollback(target.getUniqueId(), sessionsAgo, sender).whenComplete((restored, error) -> {
+            if (error == null) {
+                return;
+            }
+            
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof IllegalArgumentException) {
+                sender.sendMessage(ChatColor.RED + name + " has no logged build mode session " + sessionsAgo + ".");
+            } else if (cause instanceof IllegalStateException) {
+                sender.sendMessage(ChatColor.RED + "A rollback of " + name + " is already running.");
+            } else {
+                sender.sendMessage(ChatColor.RED + "The rollback of " + name + " failed: " + cause.getMessage());
+                plugin.getLogger().log(Level.SEVERE, "Rollback of " + name + " failed", cause);
+            }
+        });
+        
+        return true;
+    }
+    
+    /**
+     * Parses the session number of the rollback subcommand.
+     * 
+     * @param arg The argument
+     * @return The session number, or 0 if the argument is not a number
+     */
+    private int parseSessionNumber(String arg) {
+        try {
+            return Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Handles the timings subcommand.
+     * 
+     * @param sender The command sender
+     * @param args The command arguments
+     * @return True if the command was handled, false otherwise
+     */
+    private boolean handleTimings(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("buildmode.admin")) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return true;
+        }
+        
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            plugin.getUIManager().getTimings().reset();
+            plugin.getUIManager().getPlayerTimings().reset();
+            plugin.getSessionManager().getCheckTimings().reset();
+            sender.sendMessage(ChatColor.GREEN + "BuildMode timings reset.");
+            return true;
+        }
+        
+        sendTimings(sender, "UI scheduling", "ticks", plugin.getUIManager().getTimings());
+        sendTimings(sender, "UI player updates", "updates", plugin.getUIManager().getPlayerTimings());
+        sendTimings(sender, "Session checks", "ticks", plugin.getSessionManager().getCheckTimings());
+        
+        return true;
+    }
+    
+    /**
+     * Sends the timings of a task to a command sender.
+     * 
+     * @param sender The command sender
+     * @param name The name of the task
+     * @param unit What one recorded run is, for example "ticks"
+     * @param timings The task's timings
+     */
+    private void sendTimings(CommandSender sender, String name, String unit, TimingHistogram timings) {
+        sender.sendMessage(ChatColor.GREEN + name + ": " + ChatColor.WHITE + timings.getTotal() + " " + unit + ", " +
+                "median < " + timings.getPercentileMicros(50) + " µs, " +
+                "99th percentile < " + timings.getPercentileMicros(99) + " µs, " +
+                "max " + timings.getMaxMicros() + " µs");
+        
+        for (int i = 0; i < TimingHistogram.BUCKETS; i++) {
+            long count = timings.getCount(i);
+            if (count == 0) {
+                continue;
+            }
+            
+            long bound = TimingHistogram.getUpperBoundMicros(i);
+            String label = bound == Long.MAX_VALUE ? ">= " + TimingHistogram.getUpperBoundMicros(i - 1) : "< " + bound;
+            sender.sendMessage(ChatColor.YELLOW + "  " + label + " µs: " + ChatColor.WHITE + count);
+        }
+    }
+    
+    /**
+     * Formats a byte count for display.
+     * 
+     * @param bytes The byte count
+     * @return The formatted byte count
+     */
+    private String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+        }
+        
+        if (bytes >= 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        
+        return bytes + " B";
+    }
+    
     /**
      * Sends the help message to a command sender.
      * 
@@ -166,6 +360,9 @@ public class BuildModeCommand implements CommandExecutor, TabCompleter {
         if (sender.hasPermission("buildmode.admin")) {
             sender.sendMessage(ChatColor.YELLOW + "/buildmode reload" + ChatColor.WHITE + " - Reload the plugin configuration");
             sender.sendMessage(ChatColor.YELLOW + "/buildmode list" + ChatColor.WHITE + " - List active build mode sessions");
+            sender.sendMessage(ChatColor.YELLOW + "/buildmode memory" + ChatColor.WHITE + " - Show memory used by saved inventories");
+            sender.sendMessage(ChatColor.YELLOW + "/buildmode rollback <player> [session]" + ChatColor.WHITE + " - Undo the block changes of a session");
+            sender.sendMessage(ChatColor.YELLOW + "/buildmode timings [reset]" + ChatColor.WHITE + " - Show how long the per-tick tasks take");
         }
     }
     
@@ -177,11 +374,26 @@ public class BuildModeCommand implements CommandExecutor, TabCompleter {
             if (sender.hasPermission("buildmode.admin")) {
                 completions.add("reload");
                 completions.add("list");
+                completions.add("memory");
+                completions.add("rollback");
+                completions.add("timings");
             }
             
             return completions;
         }
         
+        if (args.length == 2 && args[0].equalsIgnoreCase("rollback") && sender.hasPermission("buildmode.admin")) {
+            List<String> completions = new ArrayList<>();
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                completions.add(player.getName());
+            }
+            return completions;
+        }
+        
+        if (args.length == 2 && args[0].equalsIgnoreCase("timings") && sender.hasPermission("buildmode.admin")) {
+            return new ArrayList<>(List.of("reset"));
+        }
+        
         return new ArrayList<>();
     }
 }
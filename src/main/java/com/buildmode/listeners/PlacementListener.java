@@ -0,0 +1,268 @@
+package com.buildmode.listeners;
+
+import com.buildmode.BuildMode;
+import com.buildmode.managers.PlacementIndex;
+import com.buildmode.models.SessionKey;
+import com.destroystokyo.paper.event.block.BlockDestroyEvent;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.PistonMoveReaction;
+import org.bukkit.entity.FallingBlock;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Listener that keeps the placement index in sync with the world and keeps blocks
+ * placed in build mode from dropping anything.
+ * <p>
+ * Always registered, because blocks placed in build mode can be broken long after the
+ * session has ended. Placements themselves are recorded by {@link RestrictionListener}.
+ * Every handler starts with a single index lookup, which only reads a few array slots,
+ * so the cost on ordinary survival blocks stays negligible.
+ */
+public class PlacementListener implements Listener {
+    
+    private final BuildMode plugin;
+    private final PlacementIndex index;
+    private final ThreadLocal<PendingExplosion> pendingExplosion;
+    
+    /**
+     * Creates a new placement listener.
+     * 
+     * @param plugin The plugin instance
+     */
+    public PlacementListener(BuildMode plugin) {
+        this.plugin = plugin;
+        this.index = plugin.getPlacementIndex();
+        this.pendingExplosion = new ThreadLocal<>();
+    }
+    
+    /**
+     * Empties a block's container, if it has one, so its contents do not spill.
+     * 
+     * @param block The block
+     */
+    private void clearContents(Block block) {
+        BlockState state = block.getState(false);
+        if (state instanceof Container) {
+            ((Container) state).getInventory().clear();
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        if (index.getPlacer(event.getBlock()) == null || !plugin.getConfigManager().isPlacedDropsSuppressed()) {
+            return;
+        }
+        
+        // Creative blocks must not turn into survival loot
+        event.setDropItems(false);
+        event.setExpToDrop(0);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBroken(BlockBreakEvent event) {
+        // The position no longer holds the placed block
+        if (index.remove(event.getBlock()) != null && plugin.getConfigManager().isPlacedDropsSuppressed()) {
+            clearContents(event.getBlock());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockDestroy(BlockDestroyEvent event) {
+        // Blocks that lose their support, like torches or rails, break without a player
+        if (index.getPlacer(event.getBlock()) == null || !plugin.getConfigManager().isPlacedDropsSuppressed()) {
+            return;
+        }
+        
+        event.setWillDrop(false);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockDestroyed(BlockDestroyEvent event) {
+        if (index.remove(event.getBlock()) != null && plugin.getConfigManager().isPlacedDropsSuppressed()) {
+            clearContents(event.getBlock());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        filterExplosion(event, event.blockList());
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        filterExplosion(event, event.blockList());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityExploded(EntityExplodeEvent event) {
+        finishExplosion(event, event.isCancelled(), event.blockList());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockExploded(BlockExplodeEvent event) {
+        finishExplosion(event, event.isCancelled(), event.blockList());
+    }
+    
+    /**
+     * Takes placed blocks out of an explosion so they drop nothing. The explosion's
+     * yield applies to all blocks alike, so it cannot be used to single out the placed
+     * ones. The world is only changed once the explosion has gone through, in
+     * {@link #finishExplosion}.
+     * 
+     * @param event The explosion event
+     * @param blocks The blocks the explosion destroys
+     */
+    private void filterExplosion(Event event, List<Block> blocks) {
+        if (!plugin.getConfigManager().isPlacedDropsSuppressed()) {
+            return;
+        }
+        
+        List<Block> placed = new ArrayList<>();
+        for (Iterator<Block> iterator = blocks.iterator(); iterator.hasNext(); ) {
+            Block block = iterator.next();
+            if (index.getPlacer(block) != null) {
+                iterator.remove();
+                placed.add(block);
+            }
+        }
+        
+        if (!placed.isEmpty()) {
+            pendingExplosion.set(new PendingExplosion(event, placed));
+        }
+    }
+    
+    /**
+     * Clears the placed blocks taken out of an explosion and stops tracking every
+     * destroyed block, unless the explosion was cancelled after all.
+     * 
+     * @param event The explosion event
+     * @param cancelled True if the explosion was cancelled
+     * @param blocks The blocks the explosion destroys
+     */
+    private void finishExplosion(Event event, boolean cancelled, List<Block> blocks) {
+        // Both handlers of an explosion run one after the other on the same thread
+        PendingExplosion pending = pendingExplosion.get();
+        pendingExplosion.remove();
+        
+        if (cancelled) {
+            return;
+        }
+        
+        for (Block block : blocks) {
+            index.remove(block);
+        }
+        
+        if (pending == null || pending.event() != event) {
+            return;
+        }
+        
+        for (Block block : pending.blocks()) {
+            index.remove(block);
+            clearContents(block);
+            block.setType(Material.AIR);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        moveBlocks(event.getBlocks(), event.getDirection());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        moveBlocks(event.getBlocks(), event.getDirection());
+    }
+    
+    /**
+     * Moves the placements of blocks pushed or pulled by a piston along with them.
+     * Placed blocks the piston breaks instead, like torches or flowers, stop being
+     * tracked and are cleared before the piston gets to them, so they drop nothing.
+     * 
+     * @param blocks The blocks the piston moves or breaks
+     * @param direction The direction the blocks move in
+     */
+    private void moveBlocks(List<Block> blocks, BlockFace direction) {
+        // Take all placements out first, the blocks may move onto each other's positions
+        SessionKey[] placers = new SessionKey[blocks.size()];
+        boolean any = false;
+        for (int i = 0; i < placers.length; i++) {
+            placers[i] = index.remove(blocks.get(i));
+            any |= placers[i] != null;
+        }
+        
+        if (!any) {
+            return;
+        }
+        
+        for (int i = 0; i < placers.length; i++) {
+            if (placers[i] == null) {
+                continue;
+            }
+            
+            Block block = blocks.get(i);
+            if (block.getPistonMoveReaction() != PistonMoveReaction.BREAK) {
+                index.record(block.getRelative(direction), placers[i]);
+            } else if (plugin.getConfigManager().isPlacedDropsSuppressed()) {
+                clearContents(block);
+                block.setType(Material.AIR, false);
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        if (!(event.getEntity() instanceof FallingBlock)) {
+            return;
+        }
+        
+        FallingBlock falling = (FallingBlock) event.getEntity();
+        if (event.getTo().isAir()) {
+            // A placed block starts to fall, carry its placement on the entity
+            SessionKey placer = index.remove(event.getBlock());
+            if (placer != null) {
+                index.tagEntity(falling, placer);
+                if (plugin.getConfigManager().isPlacedDropsSuppressed()) {
+                    falling.setDropItem(false);
+                }
+            }
+        } else {
+            // The falling block lands and becomes a placed block again
+            SessionKey placer = index.getEntityTag(falling);
+            if (placer != null) {
+                index.record(event.getBlock(), placer);
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        index.unloadChunk(event.getChunk());
+    }
+    
+    /**
+     * Placed blocks taken out of an explosion, waiting for it to go through.
+     * 
+     * @param event The explosion event
+     * @param blocks The placed blocks
+     */
+    private record PendingExplosion(Event event, List<Block> blocks) {
+    }
+}
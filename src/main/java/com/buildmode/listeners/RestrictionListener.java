@@ -0,0 +1,324 @@
+package com.buildmode.listeners;
+
+import com.buildmode.BuildMode;
+import com.buildmode.models.BuildSession;
+import com.buildmode.models.SessionKey;
+import com.buildmode.utils.Feedback;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockMultiPlaceEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCreativeEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Listener that enforces the build mode restrictions and records the blocks placed
+ * during build mode.
+ * <p>
+ * Registered by the session manager when the first session starts and unregistered
+ * when the last one ends, so servers where nobody is in build mode pay nothing for
+ * these events.
+ */
+public class RestrictionListener implements Listener {
+    
+    private final BuildMode plugin;
+    
+    /**
+     * Creates a new restriction listener.
+     * 
+     * @param plugin The plugin instance
+     */
+    public RestrictionListener(BuildMode plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Checks if an item is illegal for a player in build mode. Runs for nearly every
+     * inventory action, so it only consults the compiled restriction rules.
+     * 
+     * @param player The player
+     * @param item The item to check
+     * @return True if the item is illegal, false otherwise
+     */
+    private boolean isIllegal(Player player, ItemStack item) {
+        if (item == null) {
+            return false;
+        }
+        
+        return plugin.getConfigManager().getRules().isItemDenied(player, item);
+    }
+    
+    /**
+     * Checks if a player in build mode may not use an inventory.
+     * 
+     * @param player The player
+     * @param type The inventory type
+     * @return True if the inventory is denied, false otherwise
+     */
+    private boolean isContainerDenied(Player player, InventoryType type) {
+        return plugin.getConfigManager().getRules().isContainerDenied(player, type);
+    }
+    
+    /**
+     * Sends an illegal item message to a player.
+     * 
+     * @param player The player
+     */
+    private void sendIllegalItemMessage(Player player) {
+        plugin.getFeedbackDispatcher().send(player, Feedback.ILLEGAL_ITEM);
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        Player player = event.getPlayer();
+        
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            return;
+        }
+        
+        // Check if the player is interacting with a block using an item
+        if (event.hasItem() && isIllegal(player, event.getItem())) {
+            event.setCancelled(true);
+            sendIllegalItemMessage(player);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        Player player = event.getPlayer();
+        
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            return;
+        }
+        
+        // Check if the player is placing an illegal block
+        if (isIllegal(player, event.getItemInHand())) {
+            event.setCancelled(true);
+            sendIllegalItemMessage(player);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlaced(BlockPlaceEvent event) {
+        BuildSession session = plugin.getSessionManager().getSession(event.getPlayer().getUniqueId());
+        if (session == null) {
+            return;
+        }
+        
+        session.incrementBlocksPlaced();
+        
+        // Remember which blocks came from build mode and what they replaced
+        SessionKey key = SessionKey.of(session);
+        if (event instanceof BlockMultiPlaceEvent) {
+            for (BlockState state : ((BlockMultiPlaceEvent) event).getReplacedBlockStates()) {
+                plugin.getPlacementIndex().record(state.getBlock(), key);
+                plugin.getSessionManager().getChangeLog().record(key, state.getBlock(), state.getBlockData());
+            }
+        } else {
+            plugin.getPlacementIndex().record(event.getBlockPlaced(), key);
+            plugin.getSessionManager().getChangeLog().record(key, event.getBlockPlaced(), event.getBlockReplacedState().getBlockData());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBroken(BlockBreakEvent event) {
+        BuildSession session = plugin.getSessionManager().getSession(event.getPlayer().getUniqueId());
+        if (session == null) {
+            return;
+        }
+        
+        // Log the broken block so a rollback can put it back
+        plugin.getSessionManager().getChangeLog().record(SessionKey.of(session), event.getBlock(), event.getBlock().getBlockData());
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onInventoryCreative(InventoryCreativeEvent event) {
+        if (!(event.getWhoClicked() instanceof Player)) {
+            return;
+        }
+        
+        Player player = (Player) event.getWhoClicked();
+        
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            return;
+        }
+        
+        // Check if the player is trying to get an illegal item
+        if (isIllegal(player, event.getCursor())) {
+            event.setCancelled(true);
+            sendIllegalItemMessage(player);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (!(event.getWhoClicked() instanceof Player)) {
+            return;
+        }
+        
+        Player player = (Player) event.getWhoClicked();
+        
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            return;
+        }
+        
+        // Check if the player is trying to move an illegal item
+        if (event.getCurrentItem() != null && isIllegal(player, event.getCurrentItem())) {
+            // Allow if the player is in their own inventory and not transferring to a container
+            if (event.getClickedInventory() != null && 
+                event.getClickedInventory().getType() != InventoryType.PLAYER &&
+                event.getClickedInventory().getType() != InventoryType.CREATIVE) {
+                event.setCancelled(true);
+                sendIllegalItemMessage(player);
+                return;
+            }
+            
+            // Check for shift-click into container
+            if (event.getClick() == ClickType.SHIFT_LEFT || event.getClick() == ClickType.SHIFT_RIGHT) {
+                if (event.getClickedInventory() != null && 
+                    event.getClickedInventory().getType() == InventoryType.PLAYER &&
+                    event.getView().getTopInventory().getType() != InventoryType.CREATIVE) {
+                    event.setCancelled(true);
+                    sendIllegalItemMessage(player);
+                    return;
+                }
+            }
+        }
+        
+        // Prevent interaction with storage containers
+        if (event.getClickedInventory() != null) {
+            if (isContainerDenied(player, event.getClickedInventory().getType())) {
+                event.setCancelled(true);
+                plugin.getFeedbackDispatcher().send(player, Feedback.CONTAINER_INTERACT);
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        if (!(event.getWhoClicked() instanceof Player)) {
+            return;
+        }
+        
+        Player player = (Player) event.getWhoClicked();
+        
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            return;
+        }
+        
+        // Check if the player is trying to drag an illegal item
+        if (isIllegal(player, event.getOldCursor())) {
+            // Check if any of the slots are in a container inventory
+            boolean inContainer = false;
+            for (int slot : event.getRawSlots()) {
+                if (slot < event.getView().getTopInventory().getSize() && 
+                    event.getView().getTopInventory().getType() != InventoryType.CREATIVE) {
+                    inContainer = true;
+                    break;
+                }
+            }
+            
+            if (inContainer) {
+                event.setCancelled(true);
+                sendIllegalItemMessage(player);
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onInventoryMoveItem(InventoryMoveItemEvent event) {
+        // This event is fired for every hopper, dropper and hopper minecart transfer,
+        // almost always between two containers, so it must stay cheap
+        if (isBuildModeInventory(event.getSource()) || isBuildModeInventory(event.getDestination())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    /**
+     * Checks if an inventory belongs to a player in build mode.
+     * <p>
+     * The inventory type is checked first, so container inventories are rejected
+     * without resolving their holder, which may snapshot the block state.
+     * 
+     * @param inventory The inventory
+     * @return True if the inventory belongs to a player in build mode, false otherwise
+     */
+    private boolean isBuildModeInventory(Inventory inventory) {
+        if (inventory.getType() != InventoryType.PLAYER) {
+            return false;
+        }
+        
+        InventoryHolder holder = inventory.getHolder(false);
+        if (!(holder instanceof Player)) {
+            return false;
+        }
+        
+        return plugin.getSessionManager().isInBuildMode(((Player) holder).getUniqueId());
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerDropItem(PlayerDropItemEvent event) {
+        Player player = event.getPlayer();
+        
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            return;
+        }
+        
+        // Prevent dropping items in build mode
+        event.setCancelled(true);
+        plugin.getFeedbackDispatcher().send(player, Feedback.DROP);
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onEntityPickupItem(EntityPickupItemEvent event) {
+        if (!(event.getEntity() instanceof Player)) {
+            return;
+        }
+        
+        Player player = (Player) event.getEntity();
+        
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            return;
+        }
+        
+        // Check if the item is illegal
+        if (isIllegal(player, event.getItem().getItemStack())) {
+            event.setCancelled(true);
+            sendIllegalItemMessage(player);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onInventoryOpen(InventoryOpenEvent event) {
+        if (!(event.getPlayer() instanceof Player)) {
+            return;
+        }
+        
+        Player player = (Player) event.getPlayer();
+        
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            return;
+        }
+        
+        // Prevent opening storage containers
+        if (isContainerDenied(player, event.getInventory().getType())) {
+            event.setCancelled(true);
+            plugin.getFeedbackDispatcher().send(player, Feedback.CONTAINER_OPEN);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.buildmode.managers;
+
+import com.buildmode.BuildMode;
+import com.buildmode.utils.ConfigSnapshot;
+import com.buildmode.utils.Feedback;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically removes illegal items from the inventories of players in build mode.
+ * <p>
+ * Catches items that got in through paths that fire no event. Players are audited
+ * one after another, a slice of slots per tick: every tick checks at most the
+ * configured number of slots of a single player and stops early once the time budget
+ * is used up. The cost per tick therefore stays the same however many players are in
+ * build mode; only the time until each player is audited again grows.
+ */
+public class InventoryAuditor {
+    
+    private final BuildMode plugin;
+    private final AtomicBoolean inFlight;
+    private ScheduledTask auditTask;
+    private volatile int slotsPerTick;
+    private volatile long budgetNanos;
+    
+    // Only touched by the audit slice currently in flight
+    private long orderVersion = -1;
+    private UUID[] order = new UUID[0];
+    private int nextPlayer;
+    private UUID currentPlayer;
+    private int nextSlot;
+    
+    /**
+     * Creates a new inventory auditor.
+     * 
+     * @param plugin The plugin instance
+     */
+    public InventoryAuditor(BuildMode plugin) {
+        this.plugin = plugin;
+        this.inFlight = new AtomicBoolean();
+        reload();
+        startAuditTask();
+    }
+    
+    /**
+     * Starts the audit task.
+     */
+    private void startAuditTask() {
+        // Cancel existing task if it exists
+        if (auditTask != null) {
+            auditTask.cancel();
+        }
+        
+        // Start new task that runs every tick
+        auditTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> tick(), 1L, 1L);
+    }
+    
+    /**
+     * Hands the next slice of slots to the player it belongs to. Runs on the global
+     * region; the slice itself runs on the player's scheduler.
+     */
+    private void tick() {
+        // Skip while the previous slice has not run yet
+        if (!inFlight.compareAndSet(false, true)) {
+            return;
+        }
+        
+        Player player = nextPlayer();
+        if (player == null) {
+            inFlight.set(false);
+            return;
+        }
+        
+        player.getScheduler().run(plugin, task -> {
+            try {
+                auditSlice(player);
+            } finally {
+                inFlight.set(false);
+            }
+        }, () -> {
+            currentPlayer = null;
+            inFlight.set(false);
+        });
+    }
+    
+    /**
+     * Picks the player whose inventory is audited next, continuing with the current
+     * player until all of their slots have been checked.
+     * 
+     * @return The player, or null if nobody online is in build mode
+     */
+    private Player nextPlayer() {
+        if (currentPlayer != null) {
+            Player player = Bukkit.getPlayer(currentPlayer);
+            if (player != null && plugin.getSessionManager().isInBuildMode(currentPlayer)) {
+                return player;
+            }
+        }
+        
+        // Sessions only change on start and end, so the order is rarely rebuilt
+        SessionRegistry.Snapshot snapshot = plugin.getSessionManager().getSessionSnapshot();
+        if (snapshot.version() != orderVersion) {
+            order = snapshot.sessions().keySet().toArray(new UUID[0]);
+            orderVersion = snapshot.version();
+        }
+        
+        // Go round the sessions once at most, skipping offline players
+        for (int i = 0; i < order.length; i++) {
+            nextPlayer = (nextPlayer + 1) % order.length;
+            UUID uuid = order[nextPlayer];
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                currentPlayer = uuid;
+                nextSlot = 0;
+                return player;
+            }
+        }
+        
+        currentPlayer = null;
+        return null;
+    }
+    
+    /**
+     * Checks the next slots of a player's inventory. Runs on the player's scheduler.
+     * 
+     * @param player The player
+     */
+    private void auditSlice(Player player) {
+        if (!plugin.getSessionManager().isInBuildMode(player.getUniqueId())) {
+            currentPlayer = null;
+            return;
+        }
+        
+        PlayerInventory inventory = player.getInventory();
+        int size = inventory.getSize();
+        long deadline = System.nanoTime() + budgetNanos;
+        
+        for (int checked = 0; checked < slotsPerTick; checked++) {
+            // The slot after the last inventory slot is the cursor
+            if (nextSlot > size) {
+                currentPlayer = null;
+                return;
+            }
+            
+            int slot = nextSlot++;
+            ItemStack item = slot < size ? inventory.getItem(slot) : player.getItemOnCursor();
+            if (item != null && !item.getType().isAir() && plugin.getConfigManager().getRules().isItemDenied(player, item)) {
+                if (slot < size) {
+                    inventory.setItem(slot, null);
+                } else {
+                    player.setItemOnCursor(null);
+                }
+                
+                plugin.getLogger().info("Removed illegal " + item.getType() + " x" + item.getAmount() +
+                        " from " + player.getName() + "'s build mode inventory (slot " + slot + ").");
+                plugin.getFeedbackDispatcher().send(player, Feedback.ILLEGAL_ITEM);
+            }
+            
+            if (System.nanoTime() >= deadline) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Reloads the audit settings. The running task picks them up with its next slice.
+     */
+    public void reload() {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        slotsPerTick = config.auditSlotsPerTick();
+        budgetNanos = config.auditBudgetMicros() * 1000L;
+    }
+    
+    /**
+     * Stops the audit task.
+     */
+    public void cleanup() {
+        if (auditTask != null) {
+            auditTask.cancel();
+            auditTask = null;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.buildmode.managers;
+
+import com.buildmode.BuildMode;
+import com.buildmode.models.SessionKey;
+import com.buildmode.storage.ChunkPlacements;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the blocks placed during build mode, so creative blocks can be told apart
+ * from survival blocks later on.
+ * <p>
+ * The placements of a chunk are stored in the chunk's persistent data and travel with
+ * it. They are read the first time a block in the chunk is looked up and written back
+ * when the chunk unloads, so loaded chunks are never scanned. Chunks without any
+ * placements only cost a map entry while they are loaded.
+ * <p>
+ * Changes are also written back shortly after they are made, by a task on the region
+ * that owns the chunk. On region-threaded servers the plugin cannot reach every
+ * chunk when it is disabled, so this keeps the unsaved part down to the last second.
+ */
+public class PlacementIndex {
+    
+    private static final long SAVE_DELAY_TICKS = 20;
+    
+    private final BuildMode plugin;
+    private final NamespacedKey entriesKey;
+    private final NamespacedKey sessionsKey;
+    private final NamespacedKey entityKey;
+    private final Map<UUID, Map<Long, ChunkPlacements>> worlds;
+    
+    /**
+     * Creates a new placement index.
+     * 
+     * @param plugin The plugin instance
+     */
+    public PlacementIndex(BuildMode plugin) {
+        this.plugin = plugin;
+        this.entriesKey = new NamespacedKey(plugin, "placements");
+        this.sessionsKey = new NamespacedKey(plugin, "placement_sessions");
+        this.entityKey = new NamespacedKey(plugin, "placed_by");
+        this.worlds = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Records that a session placed a block.
+     * 
+     * @param block The block
+     * @param session The session that placed it
+     */
+    public void record(Block block, SessionKey session) {
+        int position = pack(block);
+        if (position < 0) {
+            return;
+        }
+        
+        ChunkPlacements placements = getPlacements(block);
+        boolean wasDirty = placements.isDirty();
+        if (!placements.put(position, session)) {
+            plugin.getLogger().warning("Too many build mode sessions placed blocks in chunk " +
+                    (block.getX() >> 4) + ", " + (block.getZ() >> 4) + " in " + block.getWorld().getName() +
+                    "; not tracking more of them.");
+        }
+        scheduleSave(block, placements, wasDirty);
+    }
+    
+    /**
+     * Gets the session that placed a block.
+     * 
+     * @param block The block
+     * @return The session, or null if the block was not placed in build mode
+     */
+    public SessionKey getPlacer(Block block) {
+        int position = pack(block);
+        return position < 0 ? null : getPlacements(block).get(position);
+    }
+    
+    /**
+     * Stops tracking a block, for example because it was broken.
+     * 
+     * @param block The block
+     * @return The session that placed the block, or null if it was not tracked
+     */
+    public SessionKey remove(Block block) {
+        int position = pack(block);
+        if (position < 0) {
+            return null;
+        }
+        
+        ChunkPlacements placements = getPlacements(block);
+        boolean wasDirty = placements.isDirty();
+        SessionKey session = placements.remove(position);
+        scheduleSave(block, placements, wasDirty);
+        return session;
+    }
+    
+    /**
+     * Tags an entity that carries a placed block, such as a falling block, with the
+     * session that placed the block.
+     * 
+     * @param entity The entity
+     * @param session The session
+     */
+    public void tagEntity(Entity entity, SessionKey session) {
+        entity.getPersistentDataContainer().set(entityKey, PersistentDataType.LONG_ARRAY, new long[] {
+                session.player().getMostSignificantBits(),
+                session.player().getLeastSignificantBits(),
+                session.startTime()
+        });
+    }
+    
+    /**
+     * Gets the session an entity was tagged with.
+     * 
+     * @param entity The entity
+     * @return The session, or null if the entity is not tagged
+     */
+    public SessionKey getEntityTag(Entity entity) {
+        long[] tag = entity.getPersistentDataContainer().get(entityKey, PersistentDataType.LONG_ARRAY);
+        if (tag == null || tag.length != 3) {
+            return null;
+        }
+        
+        return new SessionKey(new UUID(tag[0], tag[1]), tag[2]);
+    }
+    
+    /**
+     * Writes a chunk's placements to its persistent data and drops them from memory.
+     * Called when the chunk unloads.
+     * 
+     * @param chunk The chunk
+     */
+    public void unloadChunk(Chunk chunk) {
+        Map<Long, ChunkPlacements> chunks = worlds.get(chunk.getWorld().getUID());
+        if (chunks == null) {
+            return;
+        }
+        
+        ChunkPlacements placements = chunks.remove(chunkKey(chunk.getX(), chunk.getZ()));
+        if (placements != null && placements.isDirty()) {
+            placements.save(chunk.getPersistentDataContainer(), entriesKey, sessionsKey);
+        }
+    }
+    
+    /**
+     * Writes the placements of all loaded chunks that have unsaved changes and are
+     * owned by the current thread. Called when the plugin is disabled.
+     * <p>
+     * On a single-threaded server that is every chunk. On a region-threaded server
+     * chunks of other regions are skipped, since their changes were already written
+     * by their own region shortly after they were made.
+     */
+    public void saveAll() {
+        int skipped = 0;
+        for (Map.Entry<UUID, Map<Long, ChunkPlacements>> worldEntry : worlds.entrySet()) {
+            World world = Bukkit.getWorld(worldEntry.getKey());
+            if (world == null) {
+                continue;
+            }
+            
+            for (Map.Entry<Long, ChunkPlacements> entry : worldEntry.getValue().entrySet()) {
+                int x = (int) (entry.getKey() >> 32);
+                int z = (int) (long) entry.getKey();
+                if (!entry.getValue().isDirty()) {
+                    continue;
+                }
+                
+                if (!Bukkit.isOwnedByCurrentRegion(world, x, z)) {
+                    skipped++;
+                } else if (world.isChunkLoaded(x, z)) {
+                    entry.getValue().save(world.getChunkAt(x, z).getPersistentDataContainer(), entriesKey, sessionsKey);
+                }
+            }
+        }
+        
+        if (skipped > 0) {
+            plugin.getLogger().warning("Could not save the latest build mode placements of " + skipped +
+                    " chunk(s) owned by other regions.");
+        }
+        
+        worlds.clear();
+    }
+    
+    /**
+     * Schedules a chunk's placements to be written back on the region that owns the
+     * chunk once they have become dirty. Later changes before the write are covered
+     * by the same task.
+     * 
+     * @param block A block in the chunk
+     * @param placements The chunk's placements
+     * @param wasDirty Whether the placements were already dirty before the change
+     */
+    private void scheduleSave(Block block, ChunkPlacements placements, boolean wasDirty) {
+        if (wasDirty || !placements.isDirty() || !plugin.isEnabled()) {
+            return;
+        }
+        
+        World world = block.getWorld();
+        int x = block.getX() >> 4;
+        int z = block.getZ() >> 4;
+        Bukkit.getRegionScheduler().runDelayed(plugin, world, x, z, task -> save(world, x, z), SAVE_DELAY_TICKS);
+    }
+    
+    /**
+     * Writes a chunk's placements if they still have unsaved changes. Runs on the
+     * region that owns the chunk.
+     * 
+     * @param world The world
+     * @param x The chunk's x coordinate
+     * @param z The chunk's z coordinate
+     */
+    private void save(World world, int x, int z) {
+        Map<Long, ChunkPlacements> chunks = worlds.get(world.getUID());
+        ChunkPlacements placements = chunks != null ? chunks.get(chunkKey(x, z)) : null;
+        
+        // Chunks that unloaded in the meantime were saved by unloadChunk
+        if (placements != null && placements.isDirty() && world.isChunkLoaded(x, z)) {
+            placements.save(world.getChunkAt(x, z).getPersistentDataContainer(), entriesKey, sessionsKey);
+        }
+    }
+    
+    /**
+     * Gets the number of tracked blocks in loaded chunks.
+     * 
+     * @return The number of tracked blocks
+     */
+    public long getLoadedBlockCount() {
+        long count = 0;
+        for (Map<Long, ChunkPlacements> chunks : worlds.values()) {
+            for (ChunkPlacements placements : chunks.values()) {
+                count += placements.size();
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the approximate memory used by the placements of loaded chunks.
+     * 
+     * @return The size in bytes
+     */
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (Map<Long, ChunkPlacements> chunks : worlds.values()) {
+            for (ChunkPlacements placements : chunks.values()) {
+                bytes += placements.getMemoryUsage();
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * Gets the placements of the chunk a block is in, reading them from the chunk the
+     * first time. Runs on the thread that owns the chunk.
+     * 
+     * @param block The block
+     * @return The chunk's placements
+     */
+    private ChunkPlacements getPlacements(Block block) {
+        Map<Long, ChunkPlacements> chunks = worlds.computeIfAbsent(block.getWorld().getUID(), key -> new ConcurrentHashMap<>());
+        long key = chunkKey(block.getX() >> 4, block.getZ() >> 4);
+        
+        ChunkPlacements placements = chunks.get(key);
+        if (placements == null) {
+            placements = ChunkPlacements.load(block.getChunk().getPersistentDataContainer(), entriesKey, sessionsKey);
+            chunks.put(key, placements);
+        }
+        return placements;
+    }
+    
+    /**
+     * Packs a block's position inside its chunk.
+     * 
+     * @param block The block
+     * @return The packed position, or -1 if it cannot be represented
+     */
+    private static int pack(Block block) {
+        return ChunkPlacements.pack(block.getX(), block.getY(), block.getZ(), block.getWorld().getMinHeight());
+    }
+    
+    /**
+     * Packs chunk coordinates into a single key.
+     * 
+     * @param x The chunk's x coordinate
+     * @param z The chunk's z coordinate
+     * @return The chunk key
+     */
+    private static long chunkKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,257 @@
+package com.buildmode.managers;
+
+import com.buildmode.BuildMode;
+import com.buildmode.storage.ChangeLog;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Rolls back the block changes of build mode sessions.
+ * <p>
+ * A rollback works through the session's changes one chunk at a time, so at most one
+ * chunk is loaded for it at any moment. The chunk is loaded asynchronously and kept
+ * loaded with a plugin ticket while its blocks are restored on the thread that owns
+ * it. Each tick restores blocks until the configured time budget is used up and then
+ * continues in the next tick, so even very large sessions never cause a lag spike.
+ */
+public class RollbackManager {
+    
+    private static final long REPORT_INTERVAL_MILLIS = 2000;
+    
+    private final BuildMode plugin;
+    private final Map<UUID, Rollback> running;
+    
+    /**
+     * Creates a new rollback manager.
+     * 
+     * @param plugin The plugin instance
+     */
+    public RollbackManager(BuildMode plugin) {
+        this.plugin = plugin;
+        this.running = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Rolls back one of a player's sessions.
+     * 
+     * @param player The player's UUID
+     * @param sessionsAgo Which session to roll back, 1 for the newest
+     * @param reporter The command sender to report progress to, or null
+     * @return A future completed with the number of restored blocks. It fails with an
+     *         {@link IllegalArgumentException} if there is no such session, and with an
+     *         {@link IllegalStateException} if a rollback of the player is already running
+     */
+    public CompletableFuture<Integer> rollback(UUID player, int sessionsAgo, CommandSender reporter) {
+        Rollback rollback = new Rollback(reporter);
+        if (running.putIfAbsent(player, rollback) != null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A rollback of this player is already running"));
+        }
+        
+        rollback.future.whenComplete((count, error) -> running.remove(player, rollback));
+        
+        plugin.getSessionManager().getChangeLog().read(player, sessionsAgo).whenComplete((changes, error) -> {
+            if (error != null) {
+                rollback.future.completeExceptionally(error);
+            } else if (changes == null) {
+                rollback.future.completeExceptionally(new IllegalArgumentException("No such session"));
+            } else {
+                rollback.start(changes);
+            }
+        });
+        
+        return rollback.future;
+    }
+    
+    /**
+     * Checks if a rollback of a player is running.
+     * 
+     * @param player The player's UUID
+     * @return True if a rollback is running, false otherwise
+     */
+    public boolean isRunning(UUID player) {
+        return running.containsKey(player);
+    }
+    
+    /**
+     * Stops all running rollbacks. Blocks restored so far stay restored.
+     */
+    public void cleanup() {
+        for (Rollback rollback : running.values()) {
+            rollback.cancelled = true;
+        }
+        running.clear();
+    }
+    
+    /**
+     * A running rollback. Only one of its steps runs at a time, each scheduled by the
+     * one before it.
+     */
+    private final class Rollback {
+        
+        private final CommandSender reporter;
+        private final CompletableFuture<Integer> future;
+        private volatile boolean cancelled;
+        private ChangeLog.SessionChanges changes;
+        private int chunkIndex;
+        private int blockIndex;
+        private int restored;
+        private long lastReport;
+        
+        /**
+         * Creates a new rollback.
+         * 
+         * @param reporter The command sender to report progress to, or null
+         */
+        Rollback(CommandSender reporter) {
+            this.reporter = reporter;
+            this.future = new CompletableFuture<>();
+        }
+        
+        /**
+         * Starts restoring the changes.
+         * 
+         * @param changes The changes of the session
+         */
+        void start(ChangeLog.SessionChanges changes) {
+            this.changes = changes;
+            this.lastReport = System.currentTimeMillis();
+            nextChunk();
+        }
+        
+        /**
+         * Loads the next chunk with changes and restores it on its own thread.
+         */
+        void nextChunk() {
+            while (chunkIndex < changes.chunks().size()) {
+                if (cancelled) {
+                    future.complete(restored);
+                    return;
+                }
+                
+                ChangeLog.ChunkChanges chunkChanges = changes.chunks().get(chunkIndex);
+                World world = Bukkit.getWorld(chunkChanges.world());
+                if (world != null) {
+                    world.getChunkAtAsync(chunkChanges.chunkX(), chunkChanges.chunkZ()).whenComplete((chunk, error) -> {
+                        if (error != null) {
+                            future.completeExceptionally(error);
+                            return;
+                        }
+                        
+                        chunk.addPluginChunkTicket(plugin);
+                        try {
+                            Bukkit.getRegionScheduler().run(plugin, world, chunkChanges.chunkX(), chunkChanges.chunkZ(),
+                                    task -> restoreChunk(world, chunk, chunkChanges));
+                        } catch (RuntimeException e) {
+                            chunk.removePluginChunkTicket(plugin);
+                            future.completeExceptionally(e);
+                        }
+                    });
+                    return;
+                }
+                
+                // The world is gone, nothing to restore there
+                chunkIndex++;
+            }
+            
+            report(true);
+            future.complete(restored);
+        }
+        
+        /**
+         * Restores the blocks of a chunk until the tick's time budget is used up. Runs
+         * on the thread that owns the chunk.
+         * 
+         * @param world The world
+         * @param chunk The chunk, held loaded by a plugin ticket
+         * @param chunkChanges The changes in the chunk
+         */
+        void restoreChunk(World world, Chunk chunk, ChangeLog.ChunkChanges chunkChanges) {
+            boolean continued = false;
+            try {
+                if (cancelled) {
+                    future.complete(restored);
+                    return;
+                }
+                
+                long deadline = System.nanoTime() + plugin.getConfigManager().getRollbackBudgetMillis() * 1_000_000L;
+                long[] positions = chunkChanges.positions();
+                
+                while (blockIndex < positions.length) {
+                    long position = positions[blockIndex];
+                    Block block = world.getBlockAt(ChangeLog.unpackX(position), ChangeLog.unpackY(position), ChangeLog.unpackZ(position));
+                    
+                    // Without physics, so restoring a block cannot set off further updates
+                    block.setBlockData(chunkChanges.states()[blockIndex], false);
+                    plugin.getPlacementIndex().remove(block);
+                    blockIndex++;
+                    restored++;
+                    
+                    if (System.nanoTime() >= deadline) {
+                        break;
+                    }
+                }
+                
+                if (blockIndex < positions.length) {
+                    report(false);
+                    Bukkit.getRegionScheduler().runDelayed(plugin, world, chunkChanges.chunkX(), chunkChanges.chunkZ(),
+                            task -> restoreChunk(world, chunk, chunkChanges), 1L);
+                    continued = true;
+                    return;
+                }
+                
+                chunkIndex++;
+                blockIndex = 0;
+                report(false);
+            } catch (RuntimeException e) {
+                // Fail the rollback, otherwise the player could never roll back again
+                plugin.getLogger().log(Level.SEVERE, "Failed to restore blocks in chunk " + chunkChanges.chunkX() + ", " +
+                        chunkChanges.chunkZ() + " of " + world.getName(), e);
+                future.completeExceptionally(e);
+                return;
+            } finally {
+                if (!continued) {
+                    chunk.removePluginChunkTicket(plugin);
+                }
+            }
+            
+            nextChunk();
+        }
+        
+        /**
+         * Reports the progress to the command sender, at most every few seconds unless
+         * the rollback is done.
+         * 
+         * @param done True if the rollback is done
+         */
+        void report(boolean done) {
+            if (reporter == null) {
+                return;
+            }
+            
+            long now = System.currentTimeMillis();
+            if (!done && now - lastReport < REPORT_INTERVAL_MILLIS) {
+                return;
+            }
+            lastReport = now;
+            
+            if (done) {
+                reporter.sendMessage(Component.text("Rollback finished, restored " + restored + " block(s).", NamedTextColor.GREEN));
+            } else {
+                int percent = changes.total() == 0 ? 100 : (int) (restored * 100L / changes.total());
+                reporter.sendMessage(Component.text("Rollback in progress: ", NamedTextColor.YELLOW)
+                        .append(Component.text(restored + "/" + changes.total() + " block(s) (" + percent + "%)", NamedTextColor.WHITE)));
+            }
+        }
+    }
+}
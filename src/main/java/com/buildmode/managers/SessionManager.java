@@ -2,28 +2,74 @@ package com.buildmode.managers;
 
 import com.buildmode.BuildMode;
 import com.buildmode.api.BuildModeAPI;
+import com.buildmode.listeners.RestrictionListener;
 import com.buildmode.models.BuildSession;
+import com.buildmode.models.SessionKey;
+import com.buildmode.storage.ChangeLog;
+import com.buildmode.storage.CooldownStore;
+import com.buildmode.storage.PlayerState;
+import com.buildmode.storage.SessionJournal;
+import com.buildmode.storage.SessionState;
+import com.buildmode.utils.ConfigSnapshot;
+import com.buildmode.utils.ExpiryWheel;
+import com.buildmode.utils.TimingHistogram;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.Material;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.scheduler.BukkitTask;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 /**
  * Manages build mode sessions for players.
+ * <p>
+ * Only players who are online have their session and cooldown loaded. A player's
+ * stored state is loaded on join (or prefetched during async pre-login) and unloaded
+ * again when they quit. Sessions of players who quit while in build mode stay in
+ * memory with their timing data only; the saved items are evicted and loaded again
+ * from the player's shard when they rejoin.
+ * <p>
+ * Safe to use on region-threaded servers. Expiry runs on the global region, while
+ * anything that touches a player (inventory, game mode, messages) runs on that
+ * player's own scheduler. Session lookups are lock-free; cooldowns and the expiry
+ * wheel are only touched on session start and end and are guarded by their own
+ * locks.
  */
 public class SessionManager {
     
+    /**
+     * How long a state prefetched during pre-login is kept for the player's join.
+     */
+    private static final long PREFETCH_EXPIRY_MILLIS = 10 * 1000;
+    
     private final BuildMode plugin;
-    private final Map<UUID, BuildSession> activeSessions;
-    private final Map<UUID, Long> lastSessionEndTime;
-    private BukkitTask checkTask;
+    private final SessionRegistry activeSessions;
+    private final CooldownStore cooldowns;
+    private final SessionJournal journal;
+    private final ChangeLog changeLog;
+    private final Map<UUID, Prefetched> prefetched;
+    private final Set<UUID> loadingPlayers;
+    private final ExpiryWheel expiryWheel;
+    private final List<UUID> dueSessions;
+    private final RestrictionListener restrictions;
+    private boolean restrictionsRegistered;
+    private final TimingHistogram checkTimings;
+    private ScheduledTask checkTask;
     
     /**
      * Creates a new session manager.
@@ -32,8 +78,16 @@ public class SessionManager {
      */
     public SessionManager(BuildMode plugin) {
         this.plugin = plugin;
-        this.activeSessions = new HashMap<>();
-        this.lastSessionEndTime = new HashMap<>();
+        this.activeSessions = new SessionRegistry();
+        this.cooldowns = new CooldownStore(getCooldownMillis(), CooldownStore.DEFAULT_BUCKET_MILLIS);
+        this.journal = new SessionJournal(plugin);
+        this.changeLog = new ChangeLog(plugin);
+        this.prefetched = new ConcurrentHashMap<>();
+        this.loadingPlayers = ConcurrentHashMap.newKeySet();
+        this.expiryWheel = new ExpiryWheel(50);
+        this.dueSessions = new ArrayList<>();
+        this.restrictions = new RestrictionListener(plugin);
+        this.checkTimings = new TimingHistogram();
         
         // Set plugin instance in API
         BuildModeAPI.setPlugin(plugin);
@@ -54,29 +108,168 @@ public class SessionManager {
             checkTask.cancel();
         }
         
-        // Start new task that runs every 30 seconds
-        checkTask = Bukkit.getScheduler().runTaskTimer(plugin, this::checkSessions, 20L, 30 * 20L);
+        // Start new task that runs every tick, it only touches sessions that are due
+        checkTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> checkSessions(), 1L, 1L);
     }
     
     /**
-     * Checks all active sessions and ends expired ones.
+     * Ends the sessions that expired since the last tick. Runs on the global region.
      */
     private void checkSessions() {
-        for (UUID uuid : activeSessions.keySet().toArray(new UUID[0])) {
-            BuildSession session = activeSessions.get(uuid);
-            
-            if (session.hasExpired()) {
-                Player player = Bukkit.getPlayer(uuid);
-                
-                if (player != null && player.isOnline()) {
-                    endSession(player);
-                    player.sendMessage("§cYour build mode session has expired.");
-                } else {
-                    // Player is offline, just remove the session
-                    activeSessions.remove(uuid);
-                    lastSessionEndTime.put(uuid, System.currentTimeMillis());
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        
+        // Forget cooldowns that have run out
+        synchronized (cooldowns) {
+            cooldowns.expire(now, uuid -> { });
+        }
+        
+        // Collect first so the wheel is not locked while sessions are ended
+        synchronized (expiryWheel) {
+            expiryWheel.advance(now, dueSessions::add);
+        }
+        
+        for (UUID uuid : dueSessions) {
+            expireSession(uuid);
+        }
+        dueSessions.clear();
+        
+        checkTimings.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Gets the timings of the session check task, one entry per tick.
+     * 
+     * @return The timing histogram
+     */
+    public TimingHistogram getCheckTimings() {
+        return checkTimings;
+    }
+    
+    /**
+     * Ends a session whose end time has been reached. Runs on the global region and
+     * hands the player over to their own scheduler.
+     * 
+     * @param uuid The player's UUID
+     */
+    private void expireSession(UUID uuid) {
+        BuildSession session = activeSessions.get(uuid);
+        
+        // The session is scheduled again once the player's saved items have been loaded
+        if (session == null || loadingPlayers.contains(uuid)) {
+            return;
+        }
+        
+        if (!session.hasExpired()) {
+            scheduleExpiry(session);
+            return;
+        }
+        
+        Player player = Bukkit.getPlayer(uuid);
+        
+        if (player != null) {
+            player.getScheduler().run(plugin, task -> {
+                // Skip if the session was ended or replaced in the meantime
+                if (activeSessions.get(uuid) != session || loadingPlayers.contains(uuid)) {
+                    return;
                 }
+                
+                endSession(player);
+                player.sendMessage("§cYour build mode session has expired.");
+            }, () -> removeSession(uuid, session));
+        } else {
+            // Player is offline, the stored session is restored when they rejoin
+            removeSession(uuid, session);
+        }
+    }
+    
+    /**
+     * Adds a session to the active sessions and schedules its expiry.
+     * 
+     * @param uuid The player's UUID
+     * @param session The build session
+     */
+    private void addSession(UUID uuid, BuildSession session) {
+        BuildSession previous = activeSessions.put(uuid, session);
+        if (previous != null) {
+            previous.setEndTimeListener(null);
+        }
+        
+        session.setEndTimeListener(this::changeEndTime);
+        scheduleExpiry(session);
+        updateRestrictions();
+    }
+    
+    /**
+     * Reschedules a session whose end time was changed and records the new end time,
+     * so it survives a restart and the player's next join.
+     * 
+     * @param session The build session
+     */
+    private void changeEndTime(BuildSession session) {
+        scheduleExpiry(session);
+        journal.recordEndTime(session.getPlayerUUID(), session.getStartTime(), session.getEndTime());
+    }
+    
+    /**
+     * Removes a session from the active sessions and cancels its expiry.
+     * 
+     * @param uuid The player's UUID
+     */
+    private void removeSession(UUID uuid) {
+        BuildSession session = activeSessions.remove(uuid);
+        if (session != null) {
+            session.setEndTimeListener(null);
+        }
+        
+        synchronized (expiryWheel) {
+            expiryWheel.cancel(uuid);
+        }
+        updateRestrictions();
+    }
+    
+    /**
+     * Removes a session only if it is still the player's current one. Its expiry has
+     * already fired, so there is nothing to cancel.
+     * 
+     * @param uuid The player's UUID
+     * @param session The expected session
+     */
+    private void removeSession(UUID uuid, BuildSession session) {
+        if (activeSessions.remove(uuid, session)) {
+            session.setEndTimeListener(null);
+            updateRestrictions();
+        }
+    }
+    
+    /**
+     * Registers the restriction listener when the first session starts and
+     * unregisters it when the last one ends.
+     */
+    private void updateRestrictions() {
+        synchronized (restrictions) {
+            boolean needed = !activeSessions.isEmpty();
+            if (needed == restrictionsRegistered) {
+                return;
+            }
+            
+            if (needed) {
+                Bukkit.getPluginManager().registerEvents(restrictions, plugin);
+            } else {
+                HandlerList.unregisterAll(restrictions);
             }
+            restrictionsRegistered = needed;
+        }
+    }
+    
+    /**
+     * Schedules the expiry of a session at its end time.
+     * 
+     * @param session The build session
+     */
+    private void scheduleExpiry(BuildSession session) {
+        synchronized (expiryWheel) {
+            expiryWheel.schedule(session.getPlayerUUID(), session.getEndTime());
         }
     }
     
@@ -89,21 +282,29 @@ public class SessionManager {
     public boolean startSession(Player player) {
         UUID uuid = player.getUniqueId();
         
+        // Wait until the player's stored state has been loaded
+        if (loadingPlayers.contains(uuid)) {
+            player.sendMessage("§cYour build mode data is still loading, please try again.");
+            return false;
+        }
+        
         // Check if player already has an active session
-        if (activeSessions.containsKey(uuid)) {
+        if (activeSessions.contains(uuid)) {
             player.sendMessage("§cYou already have an active build mode session.");
             return false;
         }
         
         // Check cooldown
-        if (isOnCooldown(uuid)) {
-            int cooldownMinutes = plugin.getConfigManager().getCooldownMinutes();
-            player.sendMessage("§cYou must wait " + cooldownMinutes + " minute(s) between build mode sessions.");
+        long remainingCooldown = getRemainingCooldown(uuid);
+        if (remainingCooldown > 0) {
+            long remainingSeconds = (remainingCooldown + 999) / 1000;
+            player.sendMessage("§cYou must wait " + remainingSeconds + " more second(s) before starting another build mode session.");
             return false;
         }
         
         // Get session duration from config
-        int durationMinutes = plugin.getConfigManager().getBuildDurationMinutes();
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        int durationMinutes = config.buildDurationMinutes();
         
         // Check if player has admin permission to bypass time limit
         if (player.hasPermission("buildmode.admin")) {
@@ -112,7 +313,13 @@ public class SessionManager {
         
         // Create new session
         BuildSession session = new BuildSession(player, durationMinutes);
-        activeSessions.put(uuid, session);
+        addSession(uuid, session);
+        long lastSessionEnd;
+        synchronized (cooldowns) {
+            lastSessionEnd = cooldowns.getLastSessionEnd(uuid);
+        }
+        journal.recordStart(new PlayerState(SessionState.of(session), lastSessionEnd));
+        changeLog.open(SessionKey.of(session), config.rollbackKeepSessions());
         
         // Set up player for build mode
         setupBuildMode(player);
@@ -132,8 +339,14 @@ public class SessionManager {
     public boolean endSession(Player player) {
         UUID uuid = player.getUniqueId();
         
+        // Wait until the player's saved items have been loaded
+        if (loadingPlayers.contains(uuid)) {
+            player.sendMessage("§cYour build mode data is still loading, please try again.");
+            return false;
+        }
+        
         // Check if player has an active session
-        if (!activeSessions.containsKey(uuid)) {
+        if (!activeSessions.contains(uuid)) {
             player.sendMessage("§cYou don't have an active build mode session.");
             return false;
         }
@@ -145,8 +358,13 @@ public class SessionManager {
         restorePlayerState(player, session);
         
         // Remove session
-        activeSessions.remove(uuid);
-        lastSessionEndTime.put(uuid, System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+        removeSession(uuid);
+        synchronized (cooldowns) {
+            cooldowns.put(uuid, now);
+        }
+        journal.recordEnd(uuid, now);
+        changeLog.release(SessionKey.of(session));
         
         // Notify player
         player.sendMessage("§aBuild mode deactivated.");
@@ -182,9 +400,10 @@ public class SessionManager {
         player.getInventory().clear();
         
         // Restore inventory
-        player.getInventory().setStorageContents(session.getSavedInventory());
-        player.getInventory().setArmorContents(session.getSavedArmor());
-        player.getInventory().setItemInOffHand(session.getSavedOffhand());
+        ItemStack[][] savedItems = session.decodeSavedItems();
+        player.getInventory().setStorageContents(savedItems[0]);
+        player.getInventory().setArmorContents(savedItems[1]);
+        player.getInventory().setItemInOffHand(savedItems[2][0]);
         
         // Restore game mode
         GameMode previousMode = session.getPreviousGameMode();
@@ -196,13 +415,13 @@ public class SessionManager {
     }
     
     /**
-     * Checks if a player is in build mode.
+     * Checks if a player is in build mode. Safe to call from any thread.
      * 
      * @param uuid The player's UUID
      * @return True if the player is in build mode, false otherwise
      */
     public boolean isInBuildMode(UUID uuid) {
-        return activeSessions.containsKey(uuid);
+        return activeSessions.contains(uuid);
     }
     
     /**
@@ -222,57 +441,70 @@ public class SessionManager {
      * @return True if the player is on cooldown, false otherwise
      */
     public boolean isOnCooldown(UUID uuid) {
-        if (!lastSessionEndTime.containsKey(uuid)) {
-            return false;
+        return getRemainingCooldown(uuid) > 0;
+    }
+    
+    /**
+     * Gets the exact remaining cooldown of a player.
+     * 
+     * @param uuid The player's UUID
+     * @return The remaining cooldown in milliseconds, or 0 if the player is not on cooldown
+     */
+    public long getRemainingCooldown(UUID uuid) {
+        synchronized (cooldowns) {
+            return cooldowns.getRemainingMillis(uuid, System.currentTimeMillis());
         }
-        
-        long lastEnd = lastSessionEndTime.get(uuid);
-        long cooldownMillis = plugin.getConfigManager().getCooldownMinutes() * 60 * 1000;
-        
-        return System.currentTimeMillis() - lastEnd < cooldownMillis;
     }
     
     /**
-     * Saves all active sessions to file.
+     * Gets the configured cooldown between sessions.
+     * 
+     * @return The cooldown in milliseconds
+     */
+    private long getCooldownMillis() {
+        return plugin.getConfigManager().getCooldownMinutes() * 60 * 1000L;
+    }
+    
+    /**
+     * Flushes pending session changes to the journal.
+     * <p>
+     * Every change is queued to the journal writer as it happens, so this only waits
+     * (bounded) for the writes that are still pending.
      */
     public void saveAllSessions() {
-        YamlConfiguration config = new YamlConfiguration();
+        journal.close();
+        changeLog.close();
+    }
+    
+    /**
+     * Opens the session journal and loads the state of players who are already online.
+     */
+    private void loadSessions() {
+        boolean found = journal.open();
         
-        // Save active sessions
-        for (Map.Entry<UUID, BuildSession> entry : activeSessions.entrySet()) {
-            UUID uuid = entry.getKey();
-            BuildSession session = entry.getValue();
-            
-            String path = "sessions." + uuid.toString();
-            config.set(path + ".startTime", session.getStartTime());
-            config.set(path + ".endTime", session.getEndTime());
-            config.set(path + ".previousGameMode", session.getPreviousGameMode().toString());
+        // Import sessions.yml from older versions once
+        File legacyFile = plugin.getConfigManager().getSessionsFile();
+        if (!found && legacyFile.exists()) {
+            loadLegacySessions();
             
-            // Save inventory (this is simplified, actual implementation would need to serialize ItemStacks)
-            // For a real plugin, you would need to use ConfigurationSerializable or a custom serialization method
-            // This is just a placeholder
-            config.set(path + ".inventory", session.getSavedInventory());
-            config.set(path + ".armor", session.getSavedArmor());
-            config.set(path + ".offhand", session.getSavedOffhand());
-        }
-        
-        // Save last session end times
-        for (Map.Entry<UUID, Long> entry : lastSessionEndTime.entrySet()) {
-            UUID uuid = entry.getKey();
-            Long time = entry.getValue();
-            
-            config.set("lastSessionEnd." + uuid.toString(), time);
+            if (!legacyFile.renameTo(new File(legacyFile.getParentFile(), legacyFile.getName() + ".migrated"))) {
+                plugin.getLogger().warning("Failed to rename " + legacyFile.getName() + " after migrating it.");
+            }
         }
         
-        // Save to file
-        plugin.getConfigManager().saveSessionsConfig(config);
+        // Players are already online after a reload
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            handleJoin(player);
+        }
     }
     
     /**
-     * Loads saved sessions from file.
+     * Imports the sessions.yml file written by older versions into the journal.
      */
-    private void loadSessions() {
+    private void loadLegacySessions() {
         YamlConfiguration config = plugin.getConfigManager().loadSessionsConfig();
+        Map<UUID, SessionState> sessions = new HashMap<>();
+        Map<UUID, Long> lastSessionEnd = new HashMap<>();
         
         // Load active sessions
         if (config.contains("sessions")) {
@@ -284,20 +516,13 @@ public class SessionManager {
                 long endTime = config.getLong(path + ".endTime");
                 GameMode previousGameMode = GameMode.valueOf(config.getString(path + ".previousGameMode"));
                 
-                // Load inventory (this is simplified, actual implementation would need to deserialize ItemStacks)
-                // For a real plugin, you would need to use ConfigurationSerializable or a custom deserialization method
-                // This is just a placeholder
-                ItemStack[] savedInventory = (ItemStack[]) config.get(path + ".inventory");
-                ItemStack[] savedArmor = (ItemStack[]) config.get(path + ".armor");
+                ItemStack[] savedInventory = toItemArray(config.get(path + ".inventory"));
+                ItemStack[] savedArmor = toItemArray(config.get(path + ".armor"));
                 ItemStack savedOffhand = (ItemStack) config.get(path + ".offhand");
                 
                 // Create session
                 BuildSession session = new BuildSession(uuid, startTime, endTime, savedInventory, savedArmor, savedOffhand, previousGameMode);
-                
-                // Only add session if it hasn't expired
-                if (!session.hasExpired()) {
-                    activeSessions.put(uuid, session);
-                }
+                sessions.put(uuid, SessionState.of(session));
             }
         }
         
@@ -307,25 +532,237 @@ public class SessionManager {
                 UUID uuid = UUID.fromString(uuidString);
                 long time = config.getLong("lastSessionEnd." + uuidString);
                 
-                lastSessionEndTime.put(uuid, time);
+                lastSessionEnd.put(uuid, time);
+            }
+        }
+        
+        // Hand everything to the journal, which writes it into the player shards
+        for (Map.Entry<UUID, SessionState> entry : sessions.entrySet()) {
+            journal.importState(entry.getKey(), new PlayerState(entry.getValue(), lastSessionEnd.getOrDefault(entry.getKey(), -1L)));
+        }
+        for (Map.Entry<UUID, Long> entry : lastSessionEnd.entrySet()) {
+            if (!sessions.containsKey(entry.getKey())) {
+                journal.importState(entry.getKey(), new PlayerState(null, entry.getValue()));
             }
         }
     }
     
+    /**
+     * Loads a player's stored state ahead of their join. Called from the async
+     * pre-login thread, which may block.
+     * 
+     * @param uuid The player's UUID
+     */
+    public void prefetch(UUID uuid) {
+        // Logins refused after pre-login never join or quit, so their entries expire here
+        long now = System.currentTimeMillis();
+        prefetched.values().removeIf(entry -> now - entry.time() > PREFETCH_EXPIRY_MILLIS);
+        
+        try {
+            prefetched.put(uuid, new Prefetched(journal.load(uuid).get(5, TimeUnit.SECONDS), now));
+        } catch (Exception e) {
+            // The join handler loads the state itself
+            plugin.getLogger().log(Level.WARNING, "Failed to prefetch build mode data for " + uuid, e);
+        }
+    }
+    
+    /**
+     * Loads a player's stored state on join and resumes their session, if any.
+     * 
+     * @param player The player
+     */
+    public void handleJoin(Player player) {
+        UUID uuid = player.getUniqueId();
+        
+        Prefetched entry = prefetched.remove(uuid);
+        if (entry != null && System.currentTimeMillis() - entry.time() <= PREFETCH_EXPIRY_MILLIS) {
+            applyState(uuid, entry.state());
+            resumeSession(player);
+            return;
+        }
+        
+        // Not prefetched, load in the background and resume once it is done
+        loadingPlayers.add(uuid);
+        loadOnJoin(player, true);
+    }
+    
+    /**
+     * Loads a player's stored state in the background and resumes their session once
+     * it is done. A failed load is retried once; if that fails too, the player goes
+     * on with no stored state rather than staying marked as loading.
+     * 
+     * @param player The player
+     * @param retry Whether to retry once if loading fails
+     */
+    private void loadOnJoin(Player player, boolean retry) {
+        UUID uuid = player.getUniqueId();
+        
+        journal.load(uuid).whenComplete((loaded, error) -> player.getScheduler().run(plugin, task -> {
+            // The player quit in the meantime
+            if (!loadingPlayers.contains(uuid)) {
+                return;
+            }
+            
+            if (error != null && retry) {
+                plugin.getLogger().log(Level.WARNING, "Failed to load build mode data for " + player.getName() + ", retrying", error);
+                loadOnJoin(player, false);
+                return;
+            }
+            
+            loadingPlayers.remove(uuid);
+            
+            if (error != null) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to load build mode data for " + player.getName()
+                        + ", continuing without their stored session and cooldown", error);
+                return;
+            }
+            
+            applyState(uuid, loaded);
+            resumeSession(player);
+        }, null));
+    }
+    
+    /**
+     * Unloads a player's state when they quit. Every change has already been queued
+     * to the journal, so a later load always sees it. An active session keeps its
+     * timing data in memory, but its saved items are evicted.
+     * 
+     * @param player The player
+     */
+    public void handleQuit(Player player) {
+        UUID uuid = player.getUniqueId();
+        
+        BuildSession session = activeSessions.get(uuid);
+        if (session != null) {
+            session.evictSavedItems();
+            changeLog.release(SessionKey.of(session));
+        }
+        
+        synchronized (cooldowns) {
+            cooldowns.remove(uuid);
+        }
+        prefetched.remove(uuid);
+        loadingPlayers.remove(uuid);
+    }
+    
+    /**
+     * Puts a loaded player state into the in-memory maps.
+     * 
+     * @param uuid The player's UUID
+     * @param state The player's state
+     */
+    private void applyState(UUID uuid, PlayerState state) {
+        if (state.session() != null) {
+            addSession(uuid, state.session().toSession());
+        }
+        
+        if (state.lastSessionEnd() >= 0) {
+            synchronized (cooldowns) {
+                cooldowns.put(uuid, state.lastSessionEnd());
+            }
+        }
+    }
+    
+    /**
+     * Resumes or ends a player's session after their state has been loaded.
+     * 
+     * @param player The player
+     */
+    private void resumeSession(Player player) {
+        BuildSession session = activeSessions.get(player.getUniqueId());
+        if (session == null) {
+            return;
+        }
+        
+        // Check if session has expired
+        if (session.hasExpired()) {
+            // End session
+            endSession(player);
+            player.sendMessage(Component.text("Your build mode session expired while you were offline.", NamedTextColor.RED));
+        } else {
+            // Set up player for build mode again
+            player.setGameMode(GameMode.CREATIVE);
+            player.sendMessage(Component.text("You are in build mode.", NamedTextColor.GREEN));
+        }
+    }
+    
+    /**
+     * Converts an item array read from YAML, which may come back as a list.
+     * 
+     * @param value The value read from the configuration
+     * @return The items, or an empty array if the value is missing
+     */
+    private ItemStack[] toItemArray(Object value) {
+        if (value instanceof ItemStack[]) {
+            return (ItemStack[]) value;
+        }
+        
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            ItemStack[] items = new ItemStack[list.size()];
+            for (int i = 0; i < items.length; i++) {
+                Object item = list.get(i);
+                items[i] = item instanceof ItemStack ? (ItemStack) item : null;
+            }
+            return items;
+        }
+        
+        return new ItemStack[0];
+    }
+    
     /**
      * Gets all active sessions.
      * 
-     * @return The active sessions
+     * @return An immutable view of the active sessions
      */
     public Map<UUID, BuildSession> getActiveSessions() {
-        return new HashMap<>(activeSessions);
+        return activeSessions.snapshot().sessions();
     }
     
     /**
-     * Reloads the session manager.
+     * Gets an immutable, versioned view of all active sessions. Safe to call from any
+     * thread; the view is shared between callers until a session starts or ends.
+     * 
+     * @return The current snapshot
      */
-    public void reload() {
-        // Restart check task
-        startCheckTask();
+    public SessionRegistry.Snapshot getSessionSnapshot() {
+        return activeSessions.snapshot();
+    }
+    
+    /**
+     * Gets the log of block changes made in build mode sessions.
+     * 
+     * @return The change log
+     */
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+    
+    /**
+     * Applies a new configuration to the session manager. The check task runs every
+     * tick whatever the settings are, so it keeps running.
+     * 
+     * @param previous The previous configuration
+     * @param current The new configuration
+     */
+    public void reload(ConfigSnapshot previous, ConfigSnapshot current) {
+        if (previous.cooldownMinutes() == current.cooldownMinutes()) {
+            return;
+        }
+        
+        // Apply the new cooldown length
+        synchronized (cooldowns) {
+            cooldowns.setCooldownMillis(getCooldownMillis());
+        }
+        journal.setCooldownMillis(getCooldownMillis());
+    }
+    
+    /**
+     * A player's stored state, loaded during pre-login.
+     * 
+     * @param state The stored state
+     * @param time The time the state was loaded in milliseconds
+     */
+    private record Prefetched(PlayerState state, long time) {
     }
 }
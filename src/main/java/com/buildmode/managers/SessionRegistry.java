@@ -0,0 +1,140 @@
+package com.buildmode.managers;
+
+import com.buildmode.models.BuildSession;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe registry of active build sessions.
+ * <p>
+ * Point lookups go straight to a concurrent map and never lock, so they are safe from
+ * async chat, packet and PlaceholderAPI threads. Readers that need every session get
+ * an immutable {@link Snapshot}. A snapshot is only rebuilt after the registry has
+ * changed, so repeated reads between changes share the same instance without copying.
+ */
+public class SessionRegistry {
+    
+    private final Map<UUID, BuildSession> sessions;
+    private final AtomicLong version;
+    private volatile Snapshot snapshot;
+    
+    /**
+     * Creates a new, empty session registry.
+     */
+    public SessionRegistry() {
+        this.sessions = new ConcurrentHashMap<>();
+        this.version = new AtomicLong();
+        this.snapshot = new Snapshot(0, Map.of());
+    }
+    
+    /**
+     * Gets a player's session.
+     * 
+     * @param uuid The player's UUID
+     * @return The session, or null if the player has none
+     */
+    public BuildSession get(UUID uuid) {
+        return sessions.get(uuid);
+    }
+    
+    /**
+     * Checks if a player has a session.
+     * 
+     * @param uuid The player's UUID
+     * @return True if the player has a session, false otherwise
+     */
+    public boolean contains(UUID uuid) {
+        return sessions.containsKey(uuid);
+    }
+    
+    /**
+     * Adds or replaces a player's session.
+     * 
+     * @param uuid The player's UUID
+     * @param session The session
+     * @return The replaced session, or null if the player had none
+     */
+    public BuildSession put(UUID uuid, BuildSession session) {
+        BuildSession previous = sessions.put(uuid, session);
+        version.incrementAndGet();
+        return previous;
+    }
+    
+    /**
+     * Removes a player's session.
+     * 
+     * @param uuid The player's UUID
+     * @return The removed session, or null if the player had none
+     */
+    public BuildSession remove(UUID uuid) {
+        BuildSession previous = sessions.remove(uuid);
+        if (previous != null) {
+            version.incrementAndGet();
+        }
+        return previous;
+    }
+    
+    /**
+     * Removes a player's session only if it is still the given one.
+     * 
+     * @param uuid The player's UUID
+     * @param session The expected session
+     * @return True if the session was removed, false otherwise
+     */
+    public boolean remove(UUID uuid, BuildSession session) {
+        boolean removed = sessions.remove(uuid, session);
+        if (removed) {
+            version.incrementAndGet();
+        }
+        return removed;
+    }
+    
+    /**
+     * Checks if there are no sessions.
+     * 
+     * @return True if there are no sessions, false otherwise
+     */
+    public boolean isEmpty() {
+        return sessions.isEmpty();
+    }
+    
+    /**
+     * Gets the number of sessions.
+     * 
+     * @return The number of sessions
+     */
+    public int size() {
+        return sessions.size();
+    }
+    
+    /**
+     * Gets an immutable view of all sessions, rebuilding it only if the registry has
+     * changed since the last one was taken.
+     * 
+     * @return The current snapshot
+     */
+    public Snapshot snapshot() {
+        long current = version.get();
+        Snapshot cached = snapshot;
+        if (cached.version() == current) {
+            return cached;
+        }
+        
+        // Changes made while copying bump the version again, so the next read rebuilds
+        Snapshot fresh = new Snapshot(current, Map.copyOf(sessions));
+        snapshot = fresh;
+        return fresh;
+    }
+    
+    /**
+     * Immutable view of the registry at one version.
+     * 
+     * @param version The registry version the view was taken at
+     * @param sessions The sessions, keyed by player UUID
+     */
+    public record Snapshot(long version, Map<UUID, BuildSession> sessions) {
+    }
+}
@@ -1,10 +1,13 @@
 package com.buildmode.models;
 
+import com.buildmode.storage.ItemStackCodec;
 import org.bukkit.GameMode;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
+import java.io.IOException;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Represents a player's build mode session.
@@ -13,11 +16,12 @@ public class BuildSession {
     
     private final UUID playerUUID;
     private final long startTime;
-    private long endTime;
-    private ItemStack[] savedInventory;
-    private ItemStack[] savedArmor;
-    private ItemStack savedOffhand;
+    private volatile long endTime;
+    private volatile byte[] savedItems;
+    private int savedItemsSize;
     private GameMode previousGameMode;
+    private Consumer<BuildSession> endTimeListener;
+    private volatile int blocksPlaced;
     
     /**
      * Creates a new build session for a player.
@@ -52,9 +56,26 @@ public class BuildSession {
         this.playerUUID = playerUUID;
         this.startTime = startTime;
         this.endTime = endTime;
-        this.savedInventory = savedInventory;
-        this.savedArmor = savedArmor;
-        this.savedOffhand = savedOffhand;
+        this.savedItems = ItemStackCodec.encode(true, savedInventory, savedArmor, new ItemStack[] { savedOffhand });
+        this.savedItemsSize = savedItems.length;
+        this.previousGameMode = previousGameMode;
+    }
+    
+    /**
+     * Creates a build session from saved data with already encoded items.
+     * 
+     * @param playerUUID The player's UUID
+     * @param startTime The start time in milliseconds
+     * @param endTime The end time in milliseconds
+     * @param savedItems The saved items as encoded by {@link ItemStackCodec}
+     * @param previousGameMode The previous game mode
+     */
+    public BuildSession(UUID playerUUID, long startTime, long endTime, byte[] savedItems, GameMode previousGameMode) {
+        this.playerUUID = playerUUID;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.savedItems = savedItems;
+        this.savedItemsSize = savedItems.length;
         this.previousGameMode = previousGameMode;
     }
     
@@ -64,9 +85,11 @@ public class BuildSession {
      * @param player The player
      */
     private void saveInventory(Player player) {
-        this.savedInventory = player.getInventory().getStorageContents().clone();
-        this.savedArmor = player.getInventory().getArmorContents().clone();
-        this.savedOffhand = player.getInventory().getItemInOffHand().clone();
+        this.savedItems = ItemStackCodec.encode(true,
+                player.getInventory().getStorageContents(),
+                player.getInventory().getArmorContents(),
+                new ItemStack[] { player.getInventory().getItemInOffHand() });
+        this.savedItemsSize = savedItems.length;
     }
     
     /**
@@ -103,33 +126,123 @@ public class BuildSession {
      */
     public void setEndTime(long endTime) {
         this.endTime = endTime;
+        
+        if (endTimeListener != null) {
+            endTimeListener.accept(this);
+        }
+    }
+    
+    /**
+     * Sets the listener notified whenever the end time changes, so the session can be
+     * rescheduled for expiry.
+     * 
+     * @param endTimeListener The listener, or null to remove it
+     */
+    public void setEndTimeListener(Consumer<BuildSession> endTimeListener) {
+        this.endTimeListener = endTimeListener;
+    }
+    
+    /**
+     * Gets the saved items in their encoded form.
+     * 
+     * @return The saved items as encoded by {@link ItemStackCodec}, or null if they
+     *         have been evicted
+     */
+    public byte[] getSavedItemsData() {
+        return savedItems;
+    }
+    
+    /**
+     * Gets the size of the encoded saved items, even if they have been evicted.
+     * 
+     * @return The size in bytes
+     */
+    public int getSavedItemsSize() {
+        return savedItemsSize;
     }
     
     /**
-     * Gets the saved inventory.
+     * Checks if the saved items are held in memory.
      * 
-     * @return The saved inventory
+     * @return True if the saved items are loaded, false if they have been evicted
+     */
+    public boolean isSavedItemsLoaded() {
+        return savedItems != null;
+    }
+    
+    /**
+     * Drops the saved items from memory, keeping only the session's timing data.
+     * The items must already be persisted; they are loaded again with the session.
+     */
+    public void evictSavedItems() {
+        this.savedItems = null;
+    }
+    
+    /**
+     * Decodes the saved items.
+     * 
+     * @return The saved inventory, armor and offhand item, in that order
+     * @throws IllegalStateException If the saved items have been evicted, see
+     *         {@link #isSavedItemsLoaded()}, or cannot be decoded
+     */
+    public ItemStack[][] decodeSavedItems() {
+        ItemStack[][] items = decodeOrNull();
+        if (items == null) {
+            throw new IllegalStateException("Saved items for " + playerUUID + " have been evicted");
+        }
+        return items;
+    }
+    
+    /**
+     * Gets the saved inventory. The saved items of a player who is offline are not
+     * held in memory; they are loaded again when the player rejoins.
+     * 
+     * @return The saved inventory, or null if the saved items have been evicted
      */
     public ItemStack[] getSavedInventory() {
-        return savedInventory;
+        ItemStack[][] items = decodeOrNull();
+        return items != null ? items[0] : null;
     }
     
     /**
-     * Gets the saved armor.
+     * Gets the saved armor. The saved items of a player who is offline are not held
+     * in memory; they are loaded again when the player rejoins.
      * 
-     * @return The saved armor
+     * @return The saved armor, or null if the saved items have been evicted
      */
     public ItemStack[] getSavedArmor() {
-        return savedArmor;
+        ItemStack[][] items = decodeOrNull();
+        return items != null ? items[1] : null;
     }
     
     /**
-     * Gets the saved offhand item.
+     * Gets the saved offhand item. The saved items of a player who is offline are not
+     * held in memory; they are loaded again when the player rejoins.
      * 
-     * @return The saved offhand item
+     * @return The saved offhand item, or null if the saved items have been evicted
      */
     public ItemStack getSavedOffhand() {
-        return savedOffhand;
+        ItemStack[][] items = decodeOrNull();
+        return items != null ? items[2][0] : null;
+    }
+    
+    /**
+     * Decodes the saved items if they are held in memory.
+     * 
+     * @return The saved inventory, armor and offhand item, or null if they have been evicted
+     */
+    private ItemStack[][] decodeOrNull() {
+        // Read once, the items may be evicted concurrently
+        byte[] data = savedItems;
+        if (data == null) {
+            return null;
+        }
+        
+        try {
+            return ItemStackCodec.decode(data);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt saved items for " + playerUUID, e);
+        }
     }
     
     /**
@@ -141,6 +254,24 @@ public class BuildSession {
         return previousGameMode;
     }
     
+    /**
+     * Gets the number of blocks placed during the session since it was started or
+     * last restored.
+     * 
+     * @return The number of blocks placed
+     */
+    public int getBlocksPlaced() {
+        return blocksPlaced;
+    }
+    
+    /**
+     * Counts a block placed during the session. Only called on the player's thread,
+     * so the increment cannot race with itself.
+     */
+    public void incrementBlocksPlaced() {
+        blocksPlaced++;
+    }
+    
     /**
      * Checks if the session has expired.
      * 
@@ -0,0 +1,25 @@
+package com.buildmode.models;
+
+import java.util.UUID;
+
+/**
+ * Identifies a single build mode session, also after it has ended.
+ * <p>
+ * A player can only have one session at a time, so the player and the start time of
+ * the session are enough to tell their sessions apart.
+ * 
+ * @param player The player's UUID
+ * @param startTime The start time of the session in milliseconds
+ */
+public record SessionKey(UUID player, long startTime) {
+    
+    /**
+     * Gets the key of a session.
+     * 
+     * @param session The session
+     * @return The session key
+     */
+    public static SessionKey of(BuildSession session) {
+        return new SessionKey(session.getPlayerUUID(), session.getStartTime());
+    }
+}
@@ -2,16 +2,43 @@ package com.buildmode.placeholders;
 
 import com.buildmode.BuildMode;
 import com.buildmode.models.BuildSession;
+import com.buildmode.utils.TimeLabels;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * PlaceholderAPI expansion for the BuildMode plugin.
+ * <p>
+ * Scoreboard and tab list plugins request placeholders many times per second, often
+ * from async threads. All values of a player are therefore computed together and
+ * cached until the next second starts or the player's session starts or ends, so most
+ * requests are one map lookup. The cache only holds immutable values and the session
+ * manager's lookups are thread-safe, so requests are safe from any thread.
  */
 public class BuildModePlaceholders extends PlaceholderExpansion {
     
+    private static final int ACTIVE = 0;
+    private static final int TIMELEFT = 1;
+    private static final int TIMELEFT_SECONDS = 2;
+    private static final int COOLDOWN = 3;
+    private static final int COOLDOWN_SECONDS = 4;
+    
+    private static final Map<String, Integer> IDENTIFIERS = Map.of(
+            "active", ACTIVE,
+            "timeleft", TIMELEFT,
+            "timeleft_seconds", TIMELEFT_SECONDS,
+            "cooldown", COOLDOWN,
+            "cooldown_seconds", COOLDOWN_SECONDS
+    );
+    
     private final BuildMode plugin;
+    private final Map<UUID, CachedValues> cache;
+    private volatile long lastSweep;
     
     /**
      * Creates a new placeholder expansion.
@@ -20,6 +47,7 @@ public class BuildModePlaceholders extends PlaceholderExpansion {
      */
     public BuildModePlaceholders(BuildMode plugin) {
         this.plugin = plugin;
+        this.cache = new ConcurrentHashMap<>();
     }
     
     @Override
@@ -48,48 +76,87 @@ public class BuildModePlaceholders extends PlaceholderExpansion {
             return "";
         }
         
-        // %buildmode_active%
-        if (identifier.equals("active")) {
-            return plugin.getSessionManager().isInBuildMode(player.getUniqueId()) ? "true" : "false";
+        Integer index = IDENTIFIERS.get(identifier);
+        if (index == null) {
+            return null; // Placeholder is not recognized
         }
         
-        // %buildmode_timeleft%
-        if (identifier.equals("timeleft")) {
-            BuildSession session = plugin.getSessionManager().getSession(player.getUniqueId());
-            
-            if (session == null) {
-                return "0:00";
-            }
-            
-            int remainingSeconds = session.getRemainingSeconds();
-            int minutes = remainingSeconds / 60;
-            int seconds = remainingSeconds % 60;
-            
-            return String.format("%d:%02d", minutes, seconds);
-        }
+        return getValues(player.getUniqueId())[index];
+    }
+    
+    /**
+     * Gets the placeholder values of a player, computing them if the cached ones are
+     * from an earlier second or from before the player's session started or ended.
+     * 
+     * @param uuid The player's UUID
+     * @return The values, indexed like {@link #IDENTIFIERS}
+     */
+    private String[] getValues(UUID uuid) {
+        long second = System.currentTimeMillis() / 1000;
+        BuildSession session = plugin.getSessionManager().getSession(uuid);
         
-        // %buildmode_timeleft_seconds%
-        if (identifier.equals("timeleft_seconds")) {
-            BuildSession session = plugin.getSessionManager().getSession(player.getUniqueId());
-            
-            if (session == null) {
-                return "0";
-            }
-            
-            return String.valueOf(session.getRemainingSeconds());
+        CachedValues cached = cache.get(uuid);
+        if (cached != null && cached.second() == second && cached.session() == session) {
+            return cached.values();
         }
         
-        // %buildmode_cooldown%
-        if (identifier.equals("cooldown")) {
-            if (!plugin.getSessionManager().isOnCooldown(player.getUniqueId())) {
-                return "0";
-            }
-            
-            // This is a simplified implementation, in a real plugin you would need to
-            // track the exact cooldown time remaining
-            return String.valueOf(plugin.getConfigManager().getCooldownMinutes());
+        // Once a second, forget players nobody has asked about since the last second
+        if (lastSweep != second) {
+            lastSweep = second;
+            cache.values().removeIf(values -> values.second() < second - 1);
         }
         
-        return null; // Placeholder is not recognized
+        String[] values = computeValues(uuid, session);
+        cache.put(uuid, new CachedValues(second, session, values));
+        return values;
+    }
+    
+    /**
+     * Computes all placeholder values of a player.
+     * 
+     * @param uuid The player's UUID
+     * @param session The player's session, or null if they have none
+     * @return The values, indexed like {@link #IDENTIFIERS}
+     */
+    private String[] computeValues(UUID uuid, BuildSession session) {
+        String[] values = new String[IDENTIFIERS.size()];
+        
+        // %buildmode_active%
+        values[ACTIVE] = session != null ? "true" : "false";
+        
+        // %buildmode_timeleft% and %buildmode_timeleft_seconds%
+        int remainingSeconds = session != null ? session.getRemainingSeconds() : 0;
+        values[TIMELEFT] = formatTime(remainingSeconds);
+        values[TIMELEFT_SECONDS] = String.valueOf(remainingSeconds);
+        
+        // %buildmode_cooldown% and %buildmode_cooldown_seconds%, from the stored end of
+        // the last session, rounded up like the message when starting too early
+        long remainingCooldown = plugin.getSessionManager().getRemainingCooldown(uuid);
+        int cooldownSeconds = (int) ((remainingCooldown + 999) / 1000);
+        values[COOLDOWN] = formatTime(cooldownSeconds);
+        values[COOLDOWN_SECONDS] = String.valueOf(cooldownSeconds);
+        
+        return values;
+    }
+    
+    /**
+     * Formats a time as m:ss.
+     * 
+     * @param seconds The time in seconds
+     * @return The formatted time
+     */
+    private static String formatTime(int seconds) {
+        String label = TimeLabels.format(seconds);
+        return label.charAt(0) == '0' ? label.substring(1) : label;
+    }
+    
+    /**
+     * The placeholder values of a player, valid for one second and one session.
+     * 
+     * @param second The second the values were computed in
+     * @param session The player's session at that time, or null if they had none
+     * @param values The values, indexed like {@link #IDENTIFIERS}
+     */
+    private record CachedValues(long second, BuildSession session, String[] values) {
     }
 }
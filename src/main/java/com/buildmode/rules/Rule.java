@@ -0,0 +1,169 @@
+package com.buildmode.rules;
+
+import io.papermc.paper.datacomponent.DataComponentType;
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import io.papermc.paper.datacomponent.item.ItemEnchantments;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Set;
+
+/**
+ * A single restriction rule. The rule matches when all of its conditions match;
+ * conditions that are not set match anything.
+ * <p>
+ * Which materials or inventory types a rule applies to is not part of the rule
+ * itself, it is resolved once when the rules are compiled into a {@link RuleSet}.
+ */
+public class Rule {
+    
+    private final boolean deny;
+    private final Set<String> worlds;
+    private final String permission;
+    private final boolean negatePermission;
+    private final DataComponentType[] components;
+    private final int minEnchantLevel;
+    
+    /**
+     * Creates a new rule.
+     * 
+     * @param deny True if matching items or inventories are denied, false if allowed
+     * @param worlds The world names the rule applies in, or null for all worlds
+     * @param permission The permission a player must have, or null for everyone
+     * @param negatePermission True if the player must lack the permission instead
+     * @param components The data components of which an item must have at least one
+     * @param minEnchantLevel The enchantment level an item must reach, or 0 for any
+     */
+    public Rule(boolean deny, Set<String> worlds, String permission, boolean negatePermission,
+                DataComponentType[] components, int minEnchantLevel) {
+        this.deny = deny;
+        this.worlds = worlds;
+        this.permission = permission;
+        this.negatePermission = negatePermission;
+        this.components = components;
+        this.minEnchantLevel = minEnchantLevel;
+    }
+    
+    /**
+     * Checks if the rule denies what it matches.
+     * 
+     * @return True if the rule denies, false if it allows
+     */
+    public boolean isDeny() {
+        return deny;
+    }
+    
+    /**
+     * Checks if the rule has no conditions, so it matches everything it applies to.
+     * 
+     * @return True if the rule is unconditional, false otherwise
+     */
+    public boolean isUnconditional() {
+        return worlds == null && permission == null && components.length == 0 && minEnchantLevel <= 0;
+    }
+    
+    /**
+     * Checks if the rule matches. The cheapest conditions are checked first.
+     * 
+     * @param player The player
+     * @param item The item, or null when checking an inventory
+     * @return True if the rule matches, false otherwise
+     */
+    public boolean matches(Player player, ItemStack item) {
+        return matchesPlayer(player) && matchesItem(item);
+    }
+    
+    /**
+     * Checks if the rule's world and permission conditions match a player.
+     * 
+     * @param player The player
+     * @return True if the player conditions match, false otherwise
+     */
+    public boolean matchesPlayer(Player player) {
+        if (worlds != null && !worlds.contains(player.getWorld().getName())) {
+            return false;
+        }
+        
+        return permission == null || player.hasPermission(permission) != negatePermission;
+    }
+    
+    /**
+     * Checks if the rule's data component and enchantment conditions match an item.
+     * The result only depends on the item, so it can be cached per item.
+     * 
+     * @param item The item, or null when checking an inventory
+     * @return True if the item conditions match, false otherwise
+     */
+    public boolean matchesItem(ItemStack item) {
+        if (components.length == 0 && minEnchantLevel <= 0) {
+            return true;
+        }
+        
+        // Items with only their default components carry no special data
+        if (item == null || !item.hasItemMeta()) {
+            return false;
+        }
+        
+        if (components.length > 0 && !hasAnyComponent(item)) {
+            return false;
+        }
+        
+        return minEnchantLevel <= 0 || getHighestEnchantLevel(item) >= minEnchantLevel;
+    }
+    
+    /**
+     * Checks if an item has at least one of the rule's data components set.
+     * 
+     * @param item The item
+     * @return True if one of the components is set, false otherwise
+     */
+    private boolean hasAnyComponent(ItemStack item) {
+        for (DataComponentType component : components) {
+            if (item.isDataOverridden(component)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Gets the highest enchantment level on an item, including enchantments stored
+     * in enchanted books.
+     * 
+     * @param item The item
+     * @return The highest level, or 0 if the item is not enchanted
+     */
+    private static int getHighestEnchantLevel(ItemStack item) {
+        int highest = 0;
+        
+        if (item.isDataOverridden(DataComponentTypes.ENCHANTMENTS)) {
+            highest = getHighestLevel(item.getData(DataComponentTypes.ENCHANTMENTS));
+        }
+        
+        if (item.isDataOverridden(DataComponentTypes.STORED_ENCHANTMENTS)) {
+            highest = Math.max(highest, getHighestLevel(item.getData(DataComponentTypes.STORED_ENCHANTMENTS)));
+        }
+        
+        return highest;
+    }
+    
+    /**
+     * Gets the highest level of a set of enchantments.
+     * 
+     * @param enchantments The enchantments, may be null
+     * @return The highest level, or 0 if there are none
+     */
+    private static int getHighestLevel(ItemEnchantments enchantments) {
+        if (enchantments == null) {
+            return 0;
+        }
+        
+        int highest = 0;
+        for (int level : enchantments.enchantments().values()) {
+            highest = Math.max(highest, level);
+        }
+        
+        return highest;
+    }
+}
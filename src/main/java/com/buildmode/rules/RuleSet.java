@@ -0,0 +1,432 @@
+package com.buildmode.rules;
+
+import io.papermc.paper.datacomponent.DataComponentType;
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Tag;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * Restriction rules compiled into lookup tables.
+ * <p>
+ * Rules are read from the {@code item-rules} and {@code container-rules} lists in the
+ * configuration and checked in order; the first matching rule decides. At compile
+ * time every material (or inventory type) gets its own list of the rules that apply
+ * to it. Each list is cut off at the first rule without conditions, whose verdict is
+ * folded into a bitset together with the fallback. Checking an item therefore only
+ * looks at the few conditional rules for its material, however many rules are loaded,
+ * and most materials are decided by a single bit.
+ * <p>
+ * Items that carry data of their own also have their data checked against the
+ * conditional rules. Which rules' item conditions match is remembered per item in a
+ * small fixed-size cache, so the same stack moved around an inventory is only
+ * inspected once. World and permission conditions are still checked on every call.
+ * The cache belongs to the rule set, so compiling new rules on reload starts with an
+ * empty one.
+ * <p>
+ * The rules are immutable; the cache tolerates races, so instances are safe to share
+ * between threads.
+ */
+public final class RuleSet {
+    
+    private static final Map<String, DataComponentType> COMPONENTS = Map.ofEntries(
+            Map.entry("enchantments", DataComponentTypes.ENCHANTMENTS),
+            Map.entry("stored_enchantments", DataComponentTypes.STORED_ENCHANTMENTS),
+            Map.entry("custom_name", DataComponentTypes.CUSTOM_NAME),
+            Map.entry("item_name", DataComponentTypes.ITEM_NAME),
+            Map.entry("lore", DataComponentTypes.LORE),
+            Map.entry("potion_contents", DataComponentTypes.POTION_CONTENTS),
+            Map.entry("container", DataComponentTypes.CONTAINER),
+            Map.entry("bundle_contents", DataComponentTypes.BUNDLE_CONTENTS),
+            Map.entry("custom_data", DataComponentTypes.CUSTOM_DATA),
+            Map.entry("block_entity_data", DataComponentTypes.BLOCK_ENTITY_DATA),
+            Map.entry("attribute_modifiers", DataComponentTypes.ATTRIBUTE_MODIFIERS)
+    );
+    
+    private static final Material[] MATERIALS = Material.values();
+    private static final InventoryType[] INVENTORY_TYPES = InventoryType.values();
+    private static final int CACHE_SIZE = 1024;
+    
+    private final Table items;
+    private final Table containers;
+    private final CachedItem[] cache;
+    
+    /**
+     * Creates a new rule set from compiled tables.
+     * 
+     * @param items The table indexed by material ordinal
+     * @param containers The table indexed by inventory type ordinal
+     */
+    private RuleSet(Table items, Table containers) {
+        this.items = items;
+        this.containers = containers;
+        this.cache = new CachedItem[CACHE_SIZE];
+    }
+    
+    /**
+     * Checks if an item is denied for a player in build mode.
+     * 
+     * @param player The player
+     * @param item The item
+     * @return True if the item is denied, false otherwise
+     */
+    public boolean isItemDenied(Player player, ItemStack item) {
+        int ordinal = item.getType().ordinal();
+        Rule[] rules = items.conditional()[ordinal];
+        
+        // Items without data of their own match no item condition, nothing to cache
+        if (rules == null || rules.length > Long.SIZE || !item.hasItemMeta()) {
+            return items.isDenied(ordinal, player, item);
+        }
+        
+        long matching = getMatchingRules(rules, item);
+        for (int i = 0; i < rules.length; i++) {
+            if ((matching & (1L << i)) != 0 && rules[i].matchesPlayer(player)) {
+                return rules[i].isDeny();
+            }
+        }
+        
+        return items.isFallbackDenied(ordinal);
+    }
+    
+    /**
+     * Gets which of a material's rules have item conditions that match an item,
+     * looking the item up in the cache first.
+     * <p>
+     * The cache is direct-mapped: an item can only live in the slot its hash points
+     * to, and a miss replaces whatever was there. Entries are immutable, so a racing
+     * reader sees either the old or the new entry, and at worst checks the item again.
+     * 
+     * @param rules The material's conditional rules, at most 64
+     * @param item The item
+     * @return A bit per rule, set if the rule's item conditions match
+     */
+    private long getMatchingRules(Rule[] rules, ItemStack item) {
+        int hash = item.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        
+        CachedItem cached = cache[slot];
+        if (cached != null && cached.hash() == hash && cached.rules() == rules && cached.item().equals(item)) {
+            return cached.matching();
+        }
+        
+        long matching = 0;
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i].matchesItem(item)) {
+                matching |= 1L << i;
+            }
+        }
+        
+        // The stack may be changed later, so the cache keeps its own copy
+        cache[slot] = new CachedItem(hash, rules, item.clone(), matching);
+        return matching;
+    }
+    
+    /**
+     * Checks if an inventory type is denied for a player in build mode.
+     * 
+     * @param player The player
+     * @param type The inventory type
+     * @return True if the inventory is denied, false otherwise
+     */
+    public boolean isContainerDenied(Player player, InventoryType type) {
+        return containers.isDenied(type.ordinal(), player, null);
+    }
+    
+    /**
+     * Reads and compiles the rules in a configuration.
+     * 
+     * @param config The configuration
+     * @param logger The logger invalid entries are reported to
+     * @param materialAllowed The verdict for items that match no rule
+     * @return The compiled rules
+     */
+    public static RuleSet load(ConfigurationSection config, Logger logger, Predicate<Material> materialAllowed) {
+        List<Rule> itemRules = new ArrayList<>();
+        List<BitSet> itemTargets = new ArrayList<>();
+        int index = 0;
+        for (Map<?, ?> entry : config.getMapList("item-rules")) {
+            String name = "item-rules[" + index++ + "]";
+            Rule rule = parseRule(entry, name, logger);
+            BitSet targets = parseMaterials(entry, name, logger);
+            if (rule != null && (targets == null || !targets.isEmpty())) {
+                itemRules.add(rule);
+                itemTargets.add(targets);
+            }
+        }
+        
+        List<Rule> containerRules = new ArrayList<>();
+        List<BitSet> containerTargets = new ArrayList<>();
+        index = 0;
+        for (Map<?, ?> entry : config.getMapList("container-rules")) {
+            String name = "container-rules[" + index++ + "]";
+            Rule rule = parseRule(entry, name, logger);
+            BitSet targets = parseInventories(entry, name, logger);
+            if (rule != null && (targets == null || !targets.isEmpty())) {
+                containerRules.add(rule);
+                containerTargets.add(targets);
+            }
+        }
+        
+        Table items = compile(MATERIALS.length, itemRules, itemTargets, ordinal -> !materialAllowed.test(MATERIALS[ordinal]));
+        Table containers = compile(INVENTORY_TYPES.length, containerRules, containerTargets, ordinal -> false);
+        return new RuleSet(items, containers);
+    }
+    
+    /**
+     * Compiles rules into a table.
+     * 
+     * @param size The number of entries in the table
+     * @param rules The rules in order
+     * @param targets The entries each rule applies to, null for all entries
+     * @param fallback The verdict for entries that match no rule
+     * @return The compiled table
+     */
+    private static Table compile(int size, List<Rule> rules, List<BitSet> targets, IntPredicate fallback) {
+        Rule[][] conditional = new Rule[size][];
+        long[] denied = new long[(size + 63) >>> 6];
+        Map<List<Rule>, Rule[]> shared = new HashMap<>();
+        List<Rule> candidates = new ArrayList<>();
+        
+        for (int i = 0; i < size; i++) {
+            candidates.clear();
+            boolean deny = fallback.test(i);
+            
+            for (int r = 0; r < rules.size(); r++) {
+                BitSet target = targets.get(r);
+                if (target != null && !target.get(i)) {
+                    continue;
+                }
+                
+                // Nothing after a rule without conditions can be reached
+                Rule rule = rules.get(r);
+                if (rule.isUnconditional()) {
+                    deny = rule.isDeny();
+                    break;
+                }
+                candidates.add(rule);
+            }
+            
+            // Trailing rules that agree with the final verdict do not change the outcome
+            while (!candidates.isEmpty() && candidates.get(candidates.size() - 1).isDeny() == deny) {
+                candidates.remove(candidates.size() - 1);
+            }
+            
+            if (deny) {
+                denied[i >>> 6] |= 1L << i;
+            }
+            
+            // Most entries end up with the same rules, so they share one array
+            if (!candidates.isEmpty()) {
+                conditional[i] = shared.computeIfAbsent(new ArrayList<>(candidates), list -> list.toArray(new Rule[0]));
+            }
+        }
+        
+        return new Table(conditional, denied);
+    }
+    
+    /**
+     * Parses the conditions and action of a rule.
+     * 
+     * @param entry The rule entry
+     * @param name The name of the entry for warnings
+     * @param logger The logger
+     * @return The rule, or null if it is invalid
+     */
+    private static Rule parseRule(Map<?, ?> entry, String name, Logger logger) {
+        String action = String.valueOf(entry.get("action") != null ? entry.get("action") : "deny").toLowerCase(Locale.ROOT);
+        if (!action.equals("deny") && !action.equals("allow")) {
+            logger.warning("Invalid action in " + name + ": " + action);
+            return null;
+        }
+        
+        Set<String> worlds = null;
+        if (entry.containsKey("worlds")) {
+            worlds = new HashSet<>(toStringList(entry.get("worlds")));
+        }
+        
+        String permission = null;
+        boolean negatePermission = false;
+        if (entry.get("permission") != null) {
+            permission = String.valueOf(entry.get("permission"));
+            if (permission.startsWith("!")) {
+                permission = permission.substring(1);
+                negatePermission = true;
+            }
+        }
+        
+        List<DataComponentType> components = new ArrayList<>();
+        for (String componentName : toStringList(entry.get("components"))) {
+            DataComponentType component = COMPONENTS.get(componentName.toLowerCase(Locale.ROOT));
+            if (component == null) {
+                logger.warning("Invalid component in " + name + ": " + componentName);
+                continue;
+            }
+            components.add(component);
+        }
+        
+        int minEnchantLevel = 0;
+        if (entry.get("min-enchant-level") instanceof Number) {
+            minEnchantLevel = ((Number) entry.get("min-enchant-level")).intValue();
+        }
+        
+        return new Rule(action.equals("deny"), worlds, permission, negatePermission,
+                components.toArray(new DataComponentType[0]), minEnchantLevel);
+    }
+    
+    /**
+     * Parses the materials and material tags a rule applies to.
+     * 
+     * @param entry The rule entry
+     * @param name The name of the entry for warnings
+     * @param logger The logger
+     * @return The material ordinals, or null if the rule applies to all materials
+     */
+    private static BitSet parseMaterials(Map<?, ?> entry, String name, Logger logger) {
+        if (!entry.containsKey("materials") && !entry.containsKey("tags")) {
+            return null;
+        }
+        
+        BitSet targets = new BitSet(MATERIALS.length);
+        for (String materialName : toStringList(entry.get("materials"))) {
+            Material material = Material.matchMaterial(materialName);
+            if (material == null) {
+                logger.warning("Invalid material in " + name + ": " + materialName);
+                continue;
+            }
+            targets.set(material.ordinal());
+        }
+        
+        for (String tagName : toStringList(entry.get("tags"))) {
+            NamespacedKey key = NamespacedKey.fromString(tagName.startsWith("#") ? tagName.substring(1) : tagName);
+            Tag<Material> tag = key != null ? Bukkit.getTag(Tag.REGISTRY_ITEMS, key, Material.class) : null;
+            if (tag == null && key != null) {
+                tag = Bukkit.getTag(Tag.REGISTRY_BLOCKS, key, Material.class);
+            }
+            
+            if (tag == null) {
+                logger.warning("Invalid tag in " + name + ": " + tagName);
+                continue;
+            }
+            
+            for (Material material : tag.getValues()) {
+                targets.set(material.ordinal());
+            }
+        }
+        
+        return targets;
+    }
+    
+    /**
+     * Parses the inventory types a rule applies to.
+     * 
+     * @param entry The rule entry
+     * @param name The name of the entry for warnings
+     * @param logger The logger
+     * @return The inventory type ordinals, or null if the rule applies to all types
+     */
+    private static BitSet parseInventories(Map<?, ?> entry, String name, Logger logger) {
+        if (!entry.containsKey("inventories")) {
+            return null;
+        }
+        
+        BitSet targets = new BitSet(INVENTORY_TYPES.length);
+        for (String typeName : toStringList(entry.get("inventories"))) {
+            try {
+                targets.set(InventoryType.valueOf(typeName.toUpperCase(Locale.ROOT)).ordinal());
+            } catch (IllegalArgumentException e) {
+                logger.warning("Invalid inventory type in " + name + ": " + typeName);
+            }
+        }
+        
+        return targets;
+    }
+    
+    /**
+     * Converts a configuration value to a list of strings.
+     * 
+     * @param value The value, a list or a single value
+     * @return The strings, or an empty list if the value is missing
+     */
+    private static List<String> toStringList(Object value) {
+        List<String> result = new ArrayList<>();
+        
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                result.add(String.valueOf(element));
+            }
+        } else if (value != null) {
+            result.add(String.valueOf(value));
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Compiled rules for one kind of target.
+     * 
+     * @param conditional The rules to check per entry, null if the verdict is fixed
+     * @param denied The verdict per entry when none of its rules match
+     */
+    private record Table(Rule[][] conditional, long[] denied) {
+        
+        /**
+         * Checks if an entry is denied.
+         * 
+         * @param ordinal The entry
+         * @param player The player
+         * @param item The item, or null when checking an inventory
+         * @return True if the entry is denied, false otherwise
+         */
+        boolean isDenied(int ordinal, Player player, ItemStack item) {
+            Rule[] rules = conditional[ordinal];
+            if (rules != null) {
+                for (Rule rule : rules) {
+                    if (rule.matches(player, item)) {
+                        return rule.isDeny();
+                    }
+                }
+            }
+            
+            return isFallbackDenied(ordinal);
+        }
+        
+        /**
+         * Gets the verdict of an entry when none of its conditional rules match.
+         * 
+         * @param ordinal The entry
+         * @return True if the entry is denied, false otherwise
+         */
+        boolean isFallbackDenied(int ordinal) {
+            return (denied[ordinal >>> 6] & (1L << ordinal)) != 0;
+        }
+    }
+    
+    /**
+     * A cached result of checking an item against a material's item conditions.
+     * 
+     * @param hash The item's hash code
+     * @param rules The rules the item was checked against
+     * @param item A copy of the item
+     * @param matching A bit per rule, set if the rule's item conditions match
+     */
+    private record CachedItem(int hash, Rule[] rules, ItemStack item, long matching) {
+    }
+}
@@ -0,0 +1,509 @@
+package com.buildmode.storage;
+
+import com.buildmode.BuildMode;
+import com.buildmode.models.SessionKey;
+import org.bukkit.Bukkit;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of the block changes made in each build mode session, used to roll
+ * sessions back.
+ * <p>
+ * Every change records the block data the position held before, so replaying the
+ * first change of every position restores the world as it was before the session.
+ * Changes are encoded into a per-session buffer on the thread where they happen;
+ * worlds and block data are written once and then referred to by index, so a change
+ * takes 17 bytes. Full buffers, and all buffers every few seconds, are handed to a
+ * dedicated writer thread that appends them to {@code changes/<player>/<start>.log}.
+ * Only the newest sessions of each player are kept.
+ */
+public class ChangeLog {
+    
+    private static final int MAGIC = 0x424D4331; // "BMC1"
+    private static final String SUFFIX = ".log";
+    private static final int BUFFER_FLUSH_BYTES = 64 * 1024;
+    private static final long FLUSH_INTERVAL_SECONDS = 5;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    
+    private static final byte RECORD_RESET = 0;
+    private static final byte RECORD_WORLD = 1;
+    private static final byte RECORD_STATE = 2;
+    private static final byte RECORD_CHANGE = 3;
+    
+    private final BuildMode plugin;
+    private final File directory;
+    private final ScheduledThreadPoolExecutor writer;
+    private final Map<SessionKey, Buffer> buffers;
+    
+    /**
+     * Creates a new change log.
+     * 
+     * @param plugin The plugin instance
+     */
+    public ChangeLog(BuildMode plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "changes");
+        this.buffers = new ConcurrentHashMap<>();
+        this.writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "BuildMode Change Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        // The final flush in close() covers anything a periodic flush would have written
+        this.writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.writer.scheduleWithFixedDelay(this::flushAll, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Records a block change made in a session. Runs on the thread that owns the block.
+     * 
+     * @param session The session
+     * @param block The changed block
+     * @param previous The block data the block had before the change
+     */
+    public void record(SessionKey session, Block block, BlockData previous) {
+        // Appended while holding the map entry, so release() cannot take the buffer
+        // away between looking it up and appending to it
+        buffers.compute(session, (key, current) -> {
+            Buffer buffer = current != null ? current : new Buffer();
+            synchronized (buffer) {
+                try {
+                    buffer.append(block.getWorld().getUID(), pack(block.getX(), block.getY(), block.getZ()), previous);
+                } catch (IOException e) {
+                    // Writing to memory does not fail
+                    throw new IllegalStateException(e);
+                }
+                
+                if (buffer.bytes.size() >= BUFFER_FLUSH_BYTES) {
+                    drain(session, buffer);
+                }
+            }
+            return buffer;
+        });
+    }
+    
+    /**
+     * Starts logging a new session and deletes the oldest logs of the player beyond
+     * the number of sessions to keep.
+     * 
+     * @param session The new session
+     * @param keepSessions The number of sessions to keep per player, including the new one
+     */
+    public void open(SessionKey session, int keepSessions) {
+        writer.execute(() -> {
+            File[] files = listSessions(session.player());
+            for (int i = Math.max(0, keepSessions - 1); i < files.length; i++) {
+                if (!files[i].delete()) {
+                    plugin.getLogger().warning("Failed to delete old change log: " + files[i]);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Writes out a session's buffered changes and releases its buffer, for example
+     * because the session ended or the player quit. Changes recorded later start a
+     * new buffer.
+     * 
+     * @param session The session
+     */
+    public void release(SessionKey session) {
+        Buffer buffer = buffers.remove(session);
+        if (buffer != null) {
+            synchronized (buffer) {
+                drain(session, buffer);
+            }
+        }
+    }
+    
+    /**
+     * Reads the changes of one of a player's sessions, grouped by chunk.
+     * <p>
+     * Runs on the writer thread after all changes buffered so far have been written,
+     * so the result includes every change recorded before this call.
+     * 
+     * @param player The player's UUID
+     * @param sessionsAgo Which session to read, 1 for the newest
+     * @return A future completed with the changes, or with null if there is no such session
+     */
+    public CompletableFuture<SessionChanges> read(UUID player, int sessionsAgo) {
+        for (Map.Entry<SessionKey, Buffer> entry : buffers.entrySet()) {
+            if (entry.getKey().player().equals(player)) {
+                synchronized (entry.getValue()) {
+                    drain(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        
+        return CompletableFuture.supplyAsync(() -> {
+            File[] files = listSessions(player);
+            if (sessionsAgo < 1 || sessionsAgo > files.length) {
+                return null;
+            }
+            
+            File file = files[sessionsAgo - 1];
+            SessionKey session = new SessionKey(player, parseStartTime(file));
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return readChanges(session, in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read change log " + file, e);
+            }
+        }, writer);
+    }
+    
+    /**
+     * Writes all buffered changes and stops the writer thread.
+     */
+    public void close() {
+        writer.execute(this::flushAll);
+        writer.shutdown();
+        
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out waiting for pending change log writes.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Hands the contents of every buffer to the writer. Runs on the writer thread; the
+     * writes are queued behind it, in the order the buffers were drained.
+     */
+    private void flushAll() {
+        for (Map.Entry<SessionKey, Buffer> entry : buffers.entrySet()) {
+            synchronized (entry.getValue()) {
+                drain(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Takes the contents of a buffer and queues them for writing. Must be called while
+     * holding the buffer's lock, so chunks of the same buffer are queued in order.
+     * 
+     * @param session The session
+     * @param buffer The buffer
+     */
+    private void drain(SessionKey session, Buffer buffer) {
+        if (buffer.bytes.size() == 0) {
+            return;
+        }
+        
+        byte[] data = buffer.bytes.toByteArray();
+        buffer.bytes.reset();
+        
+        try {
+            writer.execute(() -> write(session, data));
+        } catch (RuntimeException e) {
+            // Rejected after close(); the final flush has already run
+            write(session, data);
+        }
+    }
+    
+    /**
+     * Appends data to a session's log file. Runs on the writer thread.
+     * 
+     * @param session The session
+     * @param data The encoded records
+     */
+    private void write(SessionKey session, byte[] data) {
+        File playerDirectory = new File(directory, session.player().toString());
+        if (!playerDirectory.exists() && !playerDirectory.mkdirs()) {
+            plugin.getLogger().severe("Failed to create directory: " + playerDirectory);
+            return;
+        }
+        
+        File file = new File(playerDirectory, session.startTime() + SUFFIX);
+        boolean created = !file.exists();
+        
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            if (created) {
+                out.writeInt(MAGIC);
+            }
+            out.write(data);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to write change log " + file + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Lists the log files of a player, newest session first.
+     * 
+     * @param player The player's UUID
+     * @return The log files
+     */
+    private File[] listSessions(UUID player) {
+        File[] files = new File(directory, player.toString()).listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        
+        Arrays.sort(files, (a, b) -> Long.compare(parseStartTime(b), parseStartTime(a)));
+        return files;
+    }
+    
+    /**
+     * Gets the session start time from a log file's name.
+     * 
+     * @param file The log file
+     * @return The start time in milliseconds, or 0 if the name is not valid
+     */
+    private static long parseStartTime(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Reads a session log. Only the first change of each position is kept, because
+     * it holds the block data from before the session. A record cut short by a crash
+     * ends the log.
+     * 
+     * @param session The session
+     * @param in The input stream
+     * @return The changes, grouped by chunk
+     * @throws IOException If the log cannot be read
+     */
+    private SessionChanges readChanges(SessionKey session, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a change log");
+        }
+        
+        List<UUID> worlds = new ArrayList<>();
+        List<BlockData> states = new ArrayList<>();
+        Map<UUID, Set<Long>> seen = new HashMap<>();
+        Map<UUID, TreeMap<Long, ChunkBuilder>> chunks = new HashMap<>();
+        int total = 0;
+        
+        try {
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case RECORD_RESET:
+                        worlds.clear();
+                        states.clear();
+                        break;
+                    case RECORD_WORLD:
+                        worlds.add(new UUID(in.readLong(), in.readLong()));
+                        break;
+                    case RECORD_STATE:
+                        states.add(parseBlockData(in.readUTF()));
+                        break;
+                    case RECORD_CHANGE:
+                        UUID world = worlds.get(in.readInt());
+                        long position = in.readLong();
+                        BlockData state = states.get(in.readInt());
+                        
+                        // Only the first change of a position holds the data from before the
+                        // session, so it counts as seen even if that data is no longer valid
+                        if (!seen.computeIfAbsent(world, key -> new HashSet<>()).add(position) || state == null) {
+                            break;
+                        }
+                        
+                        long chunkKey = ((long) (unpackX(position) >> 4) << 32) | ((unpackZ(position) >> 4) & 0xFFFFFFFFL);
+                        chunks.computeIfAbsent(world, key -> new TreeMap<>())
+                                .computeIfAbsent(chunkKey, key -> new ChunkBuilder())
+                                .add(position, state);
+                        total++;
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // End of the log
+        }
+        
+        List<ChunkChanges> result = new ArrayList<>();
+        for (Map.Entry<UUID, TreeMap<Long, ChunkBuilder>> worldEntry : chunks.entrySet()) {
+            for (Map.Entry<Long, ChunkBuilder> entry : worldEntry.getValue().entrySet()) {
+                ChunkBuilder builder = entry.getValue();
+                result.add(new ChunkChanges(worldEntry.getKey(), (int) (entry.getKey() >> 32), (int) (long) entry.getKey(),
+                        builder.positions.stream().mapToLong(Long::longValue).toArray(),
+                        builder.states.toArray(new BlockData[0])));
+            }
+        }
+        
+        return new SessionChanges(session, result, total);
+    }
+    
+    /**
+     * Parses logged block data.
+     * 
+     * @param data The block data string
+     * @return The block data, or null if it is no longer valid
+     */
+    private BlockData parseBlockData(String data) {
+        try {
+            return Bukkit.createBlockData(data);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Skipping invalid block data in change log: " + data);
+            return null;
+        }
+    }
+    
+    /**
+     * Packs block coordinates into a single value: 26 bits each for x and z and 12
+     * bits for y.
+     * 
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param z The z coordinate
+     * @return The packed position
+     */
+    private static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+    
+    /**
+     * Gets the x coordinate of a packed position.
+     * 
+     * @param position The packed position
+     * @return The x coordinate
+     */
+    public static int unpackX(long position) {
+        return (int) (position >> 38);
+    }
+    
+    /**
+     * Gets the y coordinate of a packed position.
+     * 
+     * @param position The packed position
+     * @return The y coordinate
+     */
+    public static int unpackY(long position) {
+        return (int) (position << 52 >> 52);
+    }
+    
+    /**
+     * Gets the z coordinate of a packed position.
+     * 
+     * @param position The packed position
+     * @return The z coordinate
+     */
+    public static int unpackZ(long position) {
+        return (int) (position << 26 >> 38);
+    }
+    
+    /**
+     * Changes of a session that are not written yet, together with the indexes of the
+     * worlds and block data they refer to. Guarded by its own lock.
+     */
+    private static final class Buffer {
+        private final Map<UUID, Integer> worlds = new HashMap<>();
+        private final Map<BlockData, Integer> states = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        
+        /**
+         * Creates a new buffer. Its indexes start from scratch, even when it appends
+         * to the log of a session that was logged before.
+         */
+        Buffer() {
+            bytes.write(RECORD_RESET);
+        }
+        
+        /**
+         * Encodes a change, along with its world and block data if they are new.
+         * 
+         * @param world The world's UUID
+         * @param position The packed position
+         * @param previous The previous block data
+         * @throws IOException Never, the buffer is in memory
+         */
+        void append(UUID world, long position, BlockData previous) throws IOException {
+            Integer worldIndex = worlds.get(world);
+            if (worldIndex == null) {
+                worldIndex = worlds.size();
+                worlds.put(world, worldIndex);
+                out.writeByte(RECORD_WORLD);
+                out.writeLong(world.getMostSignificantBits());
+                out.writeLong(world.getLeastSignificantBits());
+            }
+            
+            Integer stateIndex = states.get(previous);
+            if (stateIndex == null) {
+                stateIndex = states.size();
+                states.put(previous, stateIndex);
+                out.writeByte(RECORD_STATE);
+                out.writeUTF(previous.getAsString());
+            }
+            
+            out.writeByte(RECORD_CHANGE);
+            out.writeInt(worldIndex);
+            out.writeLong(position);
+            out.writeInt(stateIndex);
+        }
+    }
+    
+    /**
+     * Collects the changes of one chunk while a log is read.
+     */
+    private static final class ChunkBuilder {
+        private final List<Long> positions = new ArrayList<>();
+        private final List<BlockData> states = new ArrayList<>();
+        
+        /**
+         * Adds a change.
+         * 
+         * @param position The packed position
+         * @param state The block data to restore
+         */
+        void add(long position, BlockData state) {
+            positions.add(position);
+            states.add(state);
+        }
+    }
+    
+    /**
+     * The changes of one session that need to be undone to roll it back.
+     * 
+     * @param session The session
+     * @param chunks The changes per chunk, chunks of the same world next to each other
+     * @param total The total number of positions to restore
+     */
+    public record SessionChanges(SessionKey session, List<ChunkChanges> chunks, int total) {
+    }
+    
+    /**
+     * The changes of a session in one chunk.
+     * 
+     * @param world The world's UUID
+     * @param chunkX The chunk's x coordinate
+     * @param chunkZ The chunk's z coordinate
+     * @param positions The packed positions to restore
+     * @param states The block data to restore at each position
+     */
+    public record ChunkChanges(UUID world, int chunkX, int chunkZ, long[] positions, BlockData[] states) {
+    }
+}
@@ -0,0 +1,387 @@
+package com.buildmode.storage;
+
+import com.buildmode.models.SessionKey;
+import org.bukkit.NamespacedKey;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The blocks in one chunk that were placed during build mode, and the session that
+ * placed each of them.
+ * <p>
+ * A block's position inside the chunk is packed into 20 bits: 4 bits each for x and z
+ * and 12 bits for the height above the world's minimum. The sessions of the chunk are
+ * kept in a small palette, and each entry stores its palette index in the remaining 12
+ * bits, so a tracked block takes a single int. The entries live in an open-addressing
+ * hash table with linear probing that is at most three quarters full, which puts the
+ * cost at about five bytes per block and makes every lookup a few array reads.
+ * <p>
+ * Not thread-safe. A chunk's placements are only touched by the thread that owns the
+ * chunk, which is where its block events fire.
+ */
+public class ChunkPlacements {
+    
+    private static final int POSITION_BITS = 20;
+    private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+    private static final int MAX_HEIGHT = 1 << 12;
+    private static final int MAX_SESSIONS = (1 << (32 - POSITION_BITS)) - 1;
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private int[] table;
+    private int size;
+    private SessionKey[] sessions;
+    private int sessionCount;
+    private boolean dirty;
+    
+    /**
+     * Creates an empty set of placements. No table is allocated until the first block
+     * is added, so chunks without placements cost next to nothing.
+     */
+    public ChunkPlacements() {
+        this.sessions = new SessionKey[0];
+    }
+    
+    /**
+     * Packs a block position into the position part of an entry.
+     * 
+     * @param x The block's x coordinate
+     * @param y The block's y coordinate
+     * @param z The block's z coordinate
+     * @param minHeight The world's minimum height
+     * @return The packed position, or -1 if the height cannot be represented
+     */
+    public static int pack(int x, int y, int z, int minHeight) {
+        int height = y - minHeight;
+        if (height < 0 || height >= MAX_HEIGHT) {
+            return -1;
+        }
+        
+        return (height << 8) | ((z & 15) << 4) | (x & 15);
+    }
+    
+    /**
+     * Gets the session that placed a block.
+     * 
+     * @param position The packed position
+     * @return The session, or null if the block is not tracked
+     */
+    public SessionKey get(int position) {
+        if (table == null) {
+            return null;
+        }
+        
+        int mask = table.length - 1;
+        for (int i = slot(position, mask); ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == 0) {
+                return null;
+            }
+            if ((entry & POSITION_MASK) == position) {
+                return sessions[(entry >>> POSITION_BITS) - 1];
+            }
+        }
+    }
+    
+    /**
+     * Records that a session placed a block, replacing any earlier record for the
+     * same position.
+     * 
+     * @param position The packed position
+     * @param session The session
+     * @return True if the block is tracked, false if the chunk has run out of sessions
+     */
+    public boolean put(int position, SessionKey session) {
+        int paletteIndex = indexOf(session);
+        if (paletteIndex < 0) {
+            return false;
+        }
+        
+        if (table == null) {
+            table = new int[INITIAL_CAPACITY];
+        } else if ((size + 1) * 4 > table.length * 3) {
+            resize(table.length * 2);
+        }
+        
+        int entry = ((paletteIndex + 1) << POSITION_BITS) | position;
+        int mask = table.length - 1;
+        for (int i = slot(position, mask); ; i = (i + 1) & mask) {
+            int existing = table[i];
+            if (existing == 0) {
+                table[i] = entry;
+                size++;
+                break;
+            }
+            if ((existing & POSITION_MASK) == position) {
+                table[i] = entry;
+                break;
+            }
+        }
+        
+        dirty = true;
+        return true;
+    }
+    
+    /**
+     * Stops tracking a block.
+     * 
+     * @param position The packed position
+     * @return The session that placed the block, or null if it was not tracked
+     */
+    public SessionKey remove(int position) {
+        if (table == null) {
+            return null;
+        }
+        
+        int mask = table.length - 1;
+        int i = slot(position, mask);
+        while (true) {
+            int entry = table[i];
+            if (entry == 0) {
+                return null;
+            }
+            if ((entry & POSITION_MASK) == position) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        
+        SessionKey session = sessions[(table[i] >>> POSITION_BITS) - 1];
+        table[i] = 0;
+        size--;
+        dirty = true;
+        
+        // Shift later entries of the same run back so that lookups never stop early
+        for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = slot(table[j] & POSITION_MASK, mask);
+            boolean inPlace = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+            if (!inPlace) {
+                table[i] = table[j];
+                table[j] = 0;
+                i = j;
+            }
+        }
+        
+        return session;
+    }
+    
+    /**
+     * Gets the number of tracked blocks.
+     * 
+     * @return The number of tracked blocks
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Checks if there are changes that have not been saved yet.
+     * 
+     * @return True if there are unsaved changes, false otherwise
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+    
+    /**
+     * Gets the approximate memory used by the placements.
+     * 
+     * @return The size in bytes
+     */
+    public long getMemoryUsage() {
+        return (table != null ? table.length * 4L : 0) + sessionCount * 40L;
+    }
+    
+    /**
+     * Gets the palette index of a session, adding it to the palette if needed.
+     * 
+     * @param session The session
+     * @return The palette index, or -1 if the palette is full
+     */
+    private int indexOf(SessionKey session) {
+        // Placements come in runs from the same session, so look at the newest first
+        for (int i = sessionCount - 1; i >= 0; i--) {
+            if (sessions[i].equals(session)) {
+                return i;
+            }
+        }
+        
+        if (sessionCount == MAX_SESSIONS) {
+            compactSessions();
+            if (sessionCount == MAX_SESSIONS) {
+                return -1;
+            }
+        }
+        
+        if (sessionCount == sessions.length) {
+            sessions = Arrays.copyOf(sessions, Math.min(MAX_SESSIONS, Math.max(4, sessionCount * 2)));
+        }
+        sessions[sessionCount] = session;
+        return sessionCount++;
+    }
+    
+    /**
+     * Drops sessions from the palette that no longer own any block, renumbering the
+     * remaining ones.
+     */
+    private void compactSessions() {
+        int[] remap = new int[sessionCount];
+        if (table != null) {
+            for (int entry : table) {
+                if (entry != 0) {
+                    remap[(entry >>> POSITION_BITS) - 1] = 1;
+                }
+            }
+        }
+        
+        int kept = 0;
+        for (int i = 0; i < sessionCount; i++) {
+            if (remap[i] != 0) {
+                sessions[kept] = sessions[i];
+                remap[i] = ++kept;
+            }
+        }
+        Arrays.fill(sessions, kept, sessionCount, null);
+        sessionCount = kept;
+        
+        if (table != null) {
+            for (int i = 0; i < table.length; i++) {
+                int entry = table[i];
+                if (entry != 0) {
+                    table[i] = (remap[(entry >>> POSITION_BITS) - 1] << POSITION_BITS) | (entry & POSITION_MASK);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Rehashes all entries into a table of a new capacity.
+     * 
+     * @param capacity The new capacity, a power of two
+     */
+    private void resize(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        int mask = capacity - 1;
+        
+        for (int entry : old) {
+            if (entry == 0) {
+                continue;
+            }
+            
+            int i = slot(entry & POSITION_MASK, mask);
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = entry;
+        }
+    }
+    
+    /**
+     * Gets the home slot of a position. Positions of neighbouring blocks only differ in
+     * their low bits, so they are spread with a multiplicative hash.
+     * 
+     * @param position The packed position
+     * @param mask The table capacity minus one
+     * @return The slot
+     */
+    private static int slot(int position, int mask) {
+        return ((position * 0x9E3779B9) >>> 12) & mask;
+    }
+    
+    /**
+     * Writes the placements to a chunk's persistent data, or removes them from it if
+     * no block is tracked anymore.
+     * 
+     * @param container The chunk's persistent data container
+     * @param entriesKey The key of the entries
+     * @param sessionsKey The key of the session palette
+     */
+    public void save(PersistentDataContainer container, NamespacedKey entriesKey, NamespacedKey sessionsKey) {
+        dirty = false;
+        
+        if (size == 0) {
+            container.remove(entriesKey);
+            container.remove(sessionsKey);
+            return;
+        }
+        
+        compactSessions();
+        
+        int[] entries = new int[size];
+        int count = 0;
+        for (int entry : table) {
+            if (entry != 0) {
+                entries[count++] = entry;
+            }
+        }
+        
+        long[] palette = new long[sessionCount * 3];
+        for (int i = 0; i < sessionCount; i++) {
+            SessionKey session = sessions[i];
+            palette[i * 3] = session.player().getMostSignificantBits();
+            palette[i * 3 + 1] = session.player().getLeastSignificantBits();
+            palette[i * 3 + 2] = session.startTime();
+        }
+        
+        container.set(entriesKey, PersistentDataType.INTEGER_ARRAY, entries);
+        container.set(sessionsKey, PersistentDataType.LONG_ARRAY, palette);
+    }
+    
+    /**
+     * Reads placements written by
+     * {@link #save(PersistentDataContainer, NamespacedKey, NamespacedKey)}.
+     * 
+     * @param container The chunk's persistent data container
+     * @param entriesKey The key of the entries
+     * @param sessionsKey The key of the session palette
+     * @return The placements, empty if the chunk has none
+     */
+    public static ChunkPlacements load(PersistentDataContainer container, NamespacedKey entriesKey, NamespacedKey sessionsKey) {
+        ChunkPlacements placements = new ChunkPlacements();
+        if (!container.has(entriesKey)) {
+            return placements;
+        }
+        
+        int[] entries = container.get(entriesKey, PersistentDataType.INTEGER_ARRAY);
+        long[] palette = container.get(sessionsKey, PersistentDataType.LONG_ARRAY);
+        if (entries == null || palette == null || entries.length == 0) {
+            return placements;
+        }
+        
+        int sessionCount = Math.min(MAX_SESSIONS, palette.length / 3);
+        placements.sessions = new SessionKey[sessionCount];
+        for (int i = 0; i < sessionCount; i++) {
+            placements.sessions[i] = new SessionKey(new UUID(palette[i * 3], palette[i * 3 + 1]), palette[i * 3 + 2]);
+        }
+        placements.sessionCount = sessionCount;
+        
+        // Size the table so that loading never has to grow it
+        int capacity = INITIAL_CAPACITY;
+        while (entries.length * 4 > capacity * 3) {
+            capacity *= 2;
+        }
+        placements.table = new int[capacity];
+        int mask = capacity - 1;
+        
+        for (int entry : entries) {
+            int paletteIndex = entry >>> POSITION_BITS;
+            if (paletteIndex == 0 || paletteIndex > sessionCount) {
+                continue;
+            }
+            
+            int i = slot(entry & POSITION_MASK, mask);
+            while (placements.table[i] != 0 && (placements.table[i] & POSITION_MASK) != (entry & POSITION_MASK)) {
+                i = (i + 1) & mask;
+            }
+            if (placements.table[i] == 0) {
+                placements.size++;
+            }
+            placements.table[i] = entry;
+        }
+        
+        return placements;
+    }
+}
@@ -0,0 +1,197 @@
+package com.buildmode.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Cooldowns between build mode sessions that forget themselves once they run out.
+ * <p>
+ * Each entry is filed into a bucket by the time its cooldown ends. Expiring entries
+ * only visits the buckets whose time has passed, so the cost depends on how many
+ * entries ran out, not on how many are stored. Remaining cooldown is still exact,
+ * since it is computed from the stored end time rather than the bucket.
+ * <p>
+ * Not thread-safe, every call must come from the same thread.
+ */
+public class CooldownStore {
+    
+    /**
+     * Default width of an expiry bucket in milliseconds.
+     */
+    public static final long DEFAULT_BUCKET_MILLIS = 10 * 1000;
+    
+    private final long bucketMillis;
+    private final Map<UUID, Long> lastSessionEnd;
+    private final Map<Long, List<UUID>> buckets;
+    private long cooldownMillis;
+    private long nextBucket;
+    
+    /**
+     * Creates a new cooldown store.
+     * 
+     * @param cooldownMillis The cooldown between sessions in milliseconds
+     * @param bucketMillis The width of an expiry bucket in milliseconds
+     */
+    public CooldownStore(long cooldownMillis, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.cooldownMillis = cooldownMillis;
+        this.lastSessionEnd = new HashMap<>();
+        this.buckets = new HashMap<>();
+        this.nextBucket = Math.floorDiv(System.currentTimeMillis(), bucketMillis);
+    }
+    
+    /**
+     * Starts a player's cooldown.
+     * 
+     * @param uuid The player's UUID
+     * @param endTime The time the player's session ended in milliseconds
+     */
+    public void put(UUID uuid, long endTime) {
+        lastSessionEnd.put(uuid, endTime);
+        addToBucket(uuid, endTime);
+    }
+    
+    /**
+     * Forgets a player's cooldown. The player stays in their bucket until it expires,
+     * where the stale entry is skipped.
+     * 
+     * @param uuid The player's UUID
+     */
+    public void remove(UUID uuid) {
+        lastSessionEnd.remove(uuid);
+    }
+    
+    /**
+     * Gets the time a player's last session ended.
+     * 
+     * @param uuid The player's UUID
+     * @return The end time in milliseconds, or -1 if the player has no cooldown stored
+     */
+    public long getLastSessionEnd(UUID uuid) {
+        Long endTime = lastSessionEnd.get(uuid);
+        return endTime != null ? endTime : -1;
+    }
+    
+    /**
+     * Gets the exact remaining cooldown of a player.
+     * 
+     * @param uuid The player's UUID
+     * @param now The current time in milliseconds
+     * @return The remaining cooldown in milliseconds, or 0 if the player is not on cooldown
+     */
+    public long getRemainingMillis(UUID uuid, long now) {
+        Long endTime = lastSessionEnd.get(uuid);
+        if (endTime == null) {
+            return 0;
+        }
+        
+        return Math.max(0, endTime + cooldownMillis - now);
+    }
+    
+    /**
+     * Changes the cooldown length. Entries are filed into new buckets if it changed.
+     * 
+     * @param cooldownMillis The cooldown between sessions in milliseconds
+     */
+    public void setCooldownMillis(long cooldownMillis) {
+        if (this.cooldownMillis == cooldownMillis) {
+            return;
+        }
+        
+        this.cooldownMillis = cooldownMillis;
+        buckets.clear();
+        for (Map.Entry<UUID, Long> entry : lastSessionEnd.entrySet()) {
+            addToBucket(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Removes every entry whose cooldown has run out by now.
+     * 
+     * @param now The current time in milliseconds
+     * @param onExpire Called with the UUID of every removed entry
+     * @return The number of removed entries
+     */
+    public int expire(long now, Consumer<UUID> onExpire) {
+        long currentBucket = Math.floorDiv(now, bucketMillis);
+        if (currentBucket <= nextBucket) {
+            return 0;
+        }
+        
+        int expired = 0;
+        if (currentBucket - nextBucket <= buckets.size()) {
+            // Walk the passed buckets in order
+            for (long bucket = nextBucket; bucket < currentBucket; bucket++) {
+                expired += expireBucket(buckets.remove(bucket), now, onExpire);
+            }
+        } else {
+            // Long gap since the last call, only visit buckets that exist
+            Iterator<Map.Entry<Long, List<UUID>>> iterator = buckets.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, List<UUID>> entry = iterator.next();
+                if (entry.getKey() < currentBucket) {
+                    iterator.remove();
+                    expired += expireBucket(entry.getValue(), now, onExpire);
+                }
+            }
+        }
+        
+        nextBucket = currentBucket;
+        return expired;
+    }
+    
+    /**
+     * Gets the number of stored cooldowns.
+     * 
+     * @return The number of stored cooldowns
+     */
+    public int size() {
+        return lastSessionEnd.size();
+    }
+    
+    /**
+     * Removes the expired entries of a single bucket.
+     * 
+     * @param bucket The bucket, may be null
+     * @param now The current time in milliseconds
+     * @param onExpire Called with the UUID of every removed entry
+     * @return The number of removed entries
+     */
+    private int expireBucket(List<UUID> bucket, long now, Consumer<UUID> onExpire) {
+        if (bucket == null) {
+            return 0;
+        }
+        
+        int expired = 0;
+        for (UUID uuid : bucket) {
+            // Skip entries that were removed or restarted since they were filed
+            Long endTime = lastSessionEnd.get(uuid);
+            if (endTime == null || endTime + cooldownMillis > now) {
+                continue;
+            }
+            
+            lastSessionEnd.remove(uuid);
+            onExpire.accept(uuid);
+            expired++;
+        }
+        
+        return expired;
+    }
+    
+    /**
+     * Files an entry into the bucket of the time its cooldown ends.
+     * 
+     * @param uuid The player's UUID
+     * @param endTime The time the player's session ended in milliseconds
+     */
+    private void addToBucket(UUID uuid, long endTime) {
+        // Entries that already ran out go into the next bucket to be expired
+        long bucket = Math.max(Math.floorDiv(endTime + cooldownMillis, bucketMillis), nextBucket);
+        buckets.computeIfAbsent(bucket, key -> new ArrayList<>()).add(uuid);
+    }
+}
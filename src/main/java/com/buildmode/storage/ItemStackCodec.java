@@ -0,0 +1,303 @@
+package com.buildmode.storage;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary codec for groups of item stack arrays.
+ * <p>
+ * Layout (all integers are unsigned varints unless noted):
+ * <pre>
+ * byte    version
+ * byte    flags             bit 0 = body is deflate-compressed
+ * [varint rawLength]        only if compressed
+ * body:
+ *   varint sectionCount
+ *   per section:
+ *     varint slotCount
+ *     tokens until slotCount slots are covered:
+ *       0, varint run       run of empty slots
+ *       n, n bytes          one item, {@link ItemStack#serializeAsBytes()}
+ * </pre>
+ * Empty slots are stored as {@code null}. Air and zero-amount stacks count as empty.
+ */
+public final class ItemStackCodec {
+    
+    private static final byte VERSION = 1;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int COMPRESS_THRESHOLD = 256;
+    
+    private ItemStackCodec() {
+    }
+    
+    /**
+     * Encodes one or more item stack arrays.
+     * 
+     * @param compress Whether to deflate the body if that makes it smaller
+     * @param sections The arrays to encode
+     * @return The encoded bytes
+     */
+    public static byte[] encode(boolean compress, ItemStack[]... sections) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        
+        try {
+            writeVarInt(body, sections.length);
+            for (ItemStack[] section : sections) {
+                writeSection(body, section);
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        
+        byte[] raw = body.toByteArray();
+        if (compress && raw.length >= COMPRESS_THRESHOLD) {
+            byte[] compressed = deflate(raw);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        
+        byte[] result = new byte[raw.length + 2];
+        result[0] = VERSION;
+        result[1] = 0;
+        System.arraycopy(raw, 0, result, 2, raw.length);
+        return result;
+    }
+    
+    /**
+     * Decodes data written by {@link #encode(boolean, ItemStack[]...)}.
+     * 
+     * @param data The encoded bytes
+     * @return The decoded arrays, in the order they were encoded
+     * @throws IOException If the data is malformed
+     */
+    public static ItemStack[][] decode(byte[] data) throws IOException {
+        if (data.length < 2 || data[0] != VERSION) {
+            throw new IOException("Unsupported item data version");
+        }
+        
+        InputStream body;
+        if ((data[1] & FLAG_COMPRESSED) != 0) {
+            ByteArrayInputStream header = new ByteArrayInputStream(data, 2, data.length - 2);
+            int rawLength = readVarInt(header);
+            int offset = data.length - header.available();
+            body = new ByteArrayInputStream(inflate(data, offset, rawLength));
+        } else {
+            body = new ByteArrayInputStream(data, 2, data.length - 2);
+        }
+        
+        int sectionCount = readVarInt(body);
+        ItemStack[][] sections = new ItemStack[sectionCount][];
+        for (int i = 0; i < sectionCount; i++) {
+            sections[i] = readSection(body);
+        }
+        
+        return sections;
+    }
+    
+    /**
+     * Writes a single array of item stacks.
+     * 
+     * @param out The output
+     * @param items The items, may be null or contain nulls
+     * @throws IOException If the items could not be written
+     */
+    private static void writeSection(OutputStream out, ItemStack[] items) throws IOException {
+        if (items == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        
+        writeVarInt(out, items.length);
+        
+        int emptyRun = 0;
+        for (ItemStack item : items) {
+            if (isEmpty(item)) {
+                emptyRun++;
+                continue;
+            }
+            
+            if (emptyRun > 0) {
+                writeVarInt(out, 0);
+                writeVarInt(out, emptyRun);
+                emptyRun = 0;
+            }
+            
+            byte[] bytes = item.serializeAsBytes();
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+        
+        if (emptyRun > 0) {
+            writeVarInt(out, 0);
+            writeVarInt(out, emptyRun);
+        }
+    }
+    
+    /**
+     * Reads a single array of item stacks.
+     * 
+     * @param in The input
+     * @return The items, with nulls for empty slots
+     * @throws IOException If the data is malformed
+     */
+    private static ItemStack[] readSection(InputStream in) throws IOException {
+        ItemStack[] items = new ItemStack[readVarInt(in)];
+        
+        int slot = 0;
+        while (slot < items.length) {
+            int length = readVarInt(in);
+            
+            if (length == 0) {
+                int run = readVarInt(in);
+                if (run <= 0 || slot + run > items.length) {
+                    throw new IOException("Invalid empty slot run");
+                }
+                slot += run;
+                continue;
+            }
+            
+            byte[] bytes = new byte[length];
+            new DataInputStream(in).readFully(bytes);
+            
+            try {
+                items[slot++] = ItemStack.deserializeBytes(bytes);
+            } catch (RuntimeException e) {
+                throw new IOException("Failed to deserialize item in slot " + (slot - 1), e);
+            }
+        }
+        
+        return items;
+    }
+    
+    /**
+     * Checks if a slot counts as empty.
+     * 
+     * @param item The item
+     * @return True if the slot is empty, false otherwise
+     */
+    private static boolean isEmpty(ItemStack item) {
+        return item == null || item.getType().isAir() || item.getAmount() <= 0;
+    }
+    
+    /**
+     * Deflates a body and prepends the header.
+     * 
+     * @param raw The uncompressed body
+     * @return The framed compressed data, or null if compression did not help
+     */
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 8);
+            out.write(VERSION);
+            out.write(FLAG_COMPRESSED);
+            writeVarInt(out, raw.length);
+            
+            byte[] buffer = new byte[512];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+                
+                if (out.size() >= raw.length + 2) {
+                    return null;
+                }
+            }
+            
+            return out.toByteArray();
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    /**
+     * Inflates a compressed body.
+     * 
+     * @param data The framed data
+     * @param offset The offset of the compressed body
+     * @param rawLength The uncompressed length
+     * @return The uncompressed body
+     * @throws IOException If the data is malformed
+     */
+    private static byte[] inflate(byte[] data, int offset, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, data.length - offset);
+            
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength) {
+                int count = inflater.inflate(raw, read, rawLength - read);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                read += count;
+            }
+            
+            if (read != rawLength) {
+                throw new IOException("Truncated item data");
+            }
+            
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt item data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    /**
+     * Writes an unsigned varint.
+     * 
+     * @param out The output
+     * @param value The value
+     * @throws IOException If the value could not be written
+     */
+    static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+    
+    /**
+     * Reads an unsigned varint.
+     * 
+     * @param in The input
+     * @return The value
+     * @throws IOException If the varint is malformed or the input ended
+     */
+    static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Unexpected end of item data");
+            }
+            
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        
+        throw new IOException("Varint too long");
+    }
+}
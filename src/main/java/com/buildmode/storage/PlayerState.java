@@ -0,0 +1,24 @@
+package com.buildmode.storage;
+
+/**
+ * Immutable persisted state of a single player, as stored in their shard.
+ * 
+ * @param session The active session, or null if the player is not in build mode
+ * @param lastSessionEnd The time the player's last session ended, or -1 if unknown
+ */
+public record PlayerState(SessionState session, long lastSessionEnd) {
+    
+    /**
+     * State of a player with no stored data.
+     */
+    public static final PlayerState EMPTY = new PlayerState(null, -1);
+    
+    /**
+     * Checks if there is anything worth storing for this player.
+     * 
+     * @return True if the state is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return session == null && lastSessionEnd < 0;
+    }
+}
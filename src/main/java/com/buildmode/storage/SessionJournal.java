@@ -0,0 +1,802 @@
+package com.buildmode.storage;
+
+import com.buildmode.BuildMode;
+import org.bukkit.GameMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of session state changes, backed by per-player shard files.
+ * <p>
+ * Every session start, end, end time change and cooldown change is queued as it
+ * happens. The calling thread only captures an immutable copy of the player's state;
+ * encoding and file I/O run on a dedicated writer thread, which merges everything
+ * queued within {@link #FLUSH_DELAY_MILLIS} into a single write. Each record carries
+ * the player's full state, so the latest record for a player supersedes all earlier
+ * ones.
+ * <p>
+ * Once enough records have been written the journal is compacted: every player
+ * changed since the last compaction gets their shard rewritten (temp file, then
+ * atomic rename) and the old segments are deleted. Shards are only read when a player
+ * is loaded, so startup cost depends on the pending journal, not on how many players
+ * have ever used build mode.
+ * <p>
+ * Only live cooldowns are persisted. Shards that hold nothing but a cooldown are
+ * deleted once it runs out, and expired cooldowns are dropped whenever a shard is
+ * rewritten, so the shard directory only grows with players who are on cooldown or
+ * in build mode.
+ */
+public class SessionJournal {
+    
+    private static final int SHARD_MAGIC = 0x424D5031; // "BMP1"
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SHARD_SUFFIX = ".dat";
+    private static final int COMPACT_THRESHOLD = 512;
+    private static final long FLUSH_DELAY_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final long EXPIRE_INTERVAL_SECONDS = 60;
+    
+    private static final byte RECORD_START = 1;
+    private static final byte RECORD_END = 2;
+    private static final byte RECORD_COOLDOWN = 4;
+    private static final byte RECORD_END_TIME = 5;
+    
+    private final BuildMode plugin;
+    private final File directory;
+    private final File shardDirectory;
+    private final ScheduledThreadPoolExecutor writer;
+    private final List<Runnable> pending;
+    private boolean flushScheduled;
+    
+    // Only touched by the writer thread once open() has returned
+    private final Map<UUID, PlayerState> dirty;
+    private final CooldownStore cooldownShards;
+    private FileOutputStream segmentStream;
+    private DataOutputStream segmentOut;
+    private long generation;
+    private int recordsSinceCompaction;
+    
+    /**
+     * Creates a new session journal.
+     * 
+     * @param plugin The plugin instance
+     */
+    public SessionJournal(BuildMode plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "journal");
+        this.shardDirectory = new File(plugin.getDataFolder(), "players");
+        this.pending = new ArrayList<>();
+        this.dirty = new HashMap<>();
+        this.cooldownShards = new CooldownStore(plugin.getConfigManager().getCooldownMinutes() * 60 * 1000L,
+                EXPIRE_INTERVAL_SECONDS * 1000);
+        this.writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "BuildMode Session Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        // The final flush in close() covers anything a delayed flush would have written
+        this.writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+    
+    /**
+     * Replays the journal segments that have not been compacted yet and opens a fresh
+     * segment for appending. Replayed changes are folded into the shards in the
+     * background.
+     * 
+     * @return True if any persisted state was found, false otherwise
+     */
+    public boolean open() {
+        for (File dir : new File[] { directory, shardDirectory }) {
+            if (!dir.exists() && !dir.mkdirs()) {
+                plugin.getLogger().severe("Failed to create directory: " + dir);
+            }
+        }
+        
+        boolean found = false;
+        
+        // Replay segments that have not been compacted yet
+        long lastGeneration = -1;
+        for (long segment : listSegments()) {
+            found = true;
+            lastGeneration = segment;
+            replaySegment(segmentFile(segment));
+        }
+        
+        // Start appending to a new segment
+        generation = lastGeneration + 1;
+        openSegment();
+        
+        if (!dirty.isEmpty()) {
+            submit(this::compact);
+        }
+        
+        // Drop shards whose cooldown ran out while the server was down, then keep
+        // deleting them as they run out
+        submit(this::pruneShards);
+        writer.scheduleWithFixedDelay(this::expireShards, EXPIRE_INTERVAL_SECONDS, EXPIRE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        
+        return found || hasShards();
+    }
+    
+    /**
+     * Loads a player's state.
+     * <p>
+     * Runs on the writer thread after all changes queued so far, so the result always
+     * reflects every change recorded before this call.
+     * 
+     * @param uuid The player's UUID
+     * @return A future completed with the player's state
+     */
+    public CompletableFuture<PlayerState> load(UUID uuid) {
+        return CompletableFuture.supplyAsync(() -> {
+            flush();
+            
+            try {
+                return currentState(uuid);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read shard of " + uuid, e);
+            }
+        }, writer);
+    }
+    
+    /**
+     * Changes the cooldown length used to decide which cooldowns are still live.
+     * 
+     * @param cooldownMillis The cooldown between sessions in milliseconds
+     */
+    public void setCooldownMillis(long cooldownMillis) {
+        writer.execute(() -> cooldownShards.setCooldownMillis(cooldownMillis));
+    }
+    
+    /**
+     * Stores a player's state imported from an older storage format.
+     * 
+     * @param uuid The player's UUID
+     * @param state The player's state
+     */
+    public void importState(UUID uuid, PlayerState state) {
+        enqueue(RECORD_COOLDOWN, uuid, System.currentTimeMillis(), state);
+    }
+    
+    /**
+     * Records the start of a session.
+     * 
+     * @param state The player's state including the new session
+     */
+    public void recordStart(PlayerState state) {
+        enqueue(RECORD_START, state.session().uuid(), state.session().startTime(), state);
+    }
+    
+    /**
+     * Records the end of a session.
+     * 
+     * @param uuid The player's UUID
+     * @param time The time the session ended in milliseconds
+     */
+    public void recordEnd(UUID uuid, long time) {
+        enqueue(RECORD_END, uuid, time, new PlayerState(null, time));
+    }
+    
+    /**
+     * Records a change of a session's end time.
+     * <p>
+     * The saved items of a player who is offline are not held in memory, so the
+     * stored session is looked up on the writer thread and written again with the new
+     * end time. Nothing is written if the session has ended in the meantime.
+     * 
+     * @param uuid The player's UUID
+     * @param startTime The start time of the changed session in milliseconds
+     * @param endTime The new end time in milliseconds
+     */
+    public void recordEndTime(UUID uuid, long startTime, long endTime) {
+        enqueue(RECORD_END_TIME, uuid, System.currentTimeMillis(), () -> {
+            PlayerState current = currentState(uuid);
+            SessionState session = current.session();
+            if (session == null || session.startTime() != startTime) {
+                return null;
+            }
+            
+            return new PlayerState(new SessionState(uuid, startTime, endTime,
+                    session.previousGameMode(), session.savedItems()), current.lastSessionEnd());
+        });
+    }
+    
+    /**
+     * Writes all queued changes and closes the journal.
+     * <p>
+     * Waits at most {@link #SHUTDOWN_TIMEOUT_SECONDS} for the writer, so the cost
+     * depends only on how many changes are still pending.
+     */
+    public void close() {
+        synchronized (pending) {
+            flushScheduled = true;
+        }
+        
+        writer.execute(() -> {
+            flush();
+            closeSegment();
+        });
+        writer.shutdown();
+        
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out waiting for pending session writes.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Queues a record for the writer thread and schedules a flush if none is pending
+     * yet, so a burst of changes ends up in one write.
+     * 
+     * @param type The record type
+     * @param uuid The player's UUID
+     * @param time The record timestamp
+     * @param state The player's full state after the change
+     */
+    private void enqueue(byte type, UUID uuid, long time, PlayerState state) {
+        enqueue(type, uuid, time, () -> state);
+    }
+    
+    /**
+     * Queues a record whose state is only worked out on the writer thread, once every
+     * earlier record has been applied.
+     * 
+     * @param type The record type
+     * @param uuid The player's UUID
+     * @param time The record timestamp
+     * @param change Supplies the player's full state after the change, or null to
+     *         write nothing
+     */
+    private void enqueue(byte type, UUID uuid, long time, StateChange change) {
+        synchronized (pending) {
+            pending.add(() -> {
+                try {
+                    PlayerState state = change.apply();
+                    if (state == null) {
+                        return;
+                    }
+                    
+                    append(type, uuid, time, state);
+                    dirty.put(uuid, state);
+                    recordsSinceCompaction++;
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to write session journal: " + e.getMessage());
+                }
+            });
+            
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        
+        writer.schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Runs a task on the writer thread.
+     * 
+     * @param task The task
+     */
+    private void submit(IoTask task) {
+        writer.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to compact session journal: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Runs all queued records in order, syncs the current segment to disk and
+     * compacts if enough records have accumulated. Runs on the writer thread.
+     */
+    private void flush() {
+        List<Runnable> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        
+        for (Runnable operation : batch) {
+            operation.run();
+        }
+        
+        if (segmentOut == null) {
+            return;
+        }
+        
+        try {
+            segmentOut.flush();
+            segmentStream.getFD().sync();
+            
+            if (recordsSinceCompaction >= COMPACT_THRESHOLD) {
+                compact();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to sync session journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Rewrites the shards of every player changed since the last compaction and
+     * deletes the segments they came from. Runs on the writer thread.
+     * <p>
+     * Segments are only deleted once all shards are in place. A crash in between
+     * replays the same full-state records again, which is harmless.
+     * 
+     * @throws IOException If a shard could not be written
+     */
+    private void compact() throws IOException {
+        // Roll over to a new segment
+        closeSegment();
+        generation++;
+        openSegment();
+        
+        long now = System.currentTimeMillis();
+        for (Map.Entry<UUID, PlayerState> entry : dirty.entrySet()) {
+            writeShard(entry.getKey(), withLiveCooldown(entry.getKey(), entry.getValue(), now));
+        }
+        dirty.clear();
+        recordsSinceCompaction = 0;
+        
+        // Segments before the current one are now covered by the shards
+        for (long segment : listSegments()) {
+            if (segment < generation) {
+                Files.deleteIfExists(segmentFile(segment).toPath());
+            }
+        }
+    }
+    
+    /**
+     * Drops a state's cooldown if it has run out and tracks shards that will hold
+     * nothing but a cooldown, so they can be deleted once it runs out. Runs on the
+     * writer thread.
+     * 
+     * @param uuid The player's UUID
+     * @param state The player's state
+     * @param now The current time in milliseconds
+     * @return The state to store
+     */
+    private PlayerState withLiveCooldown(UUID uuid, PlayerState state, long now) {
+        if (state.lastSessionEnd() < 0) {
+            cooldownShards.remove(uuid);
+            return state;
+        }
+        
+        cooldownShards.put(uuid, state.lastSessionEnd());
+        boolean live = cooldownShards.getRemainingMillis(uuid, now) > 0;
+        if (!live || state.session() != null) {
+            // Only shards that hold nothing but a live cooldown expire on their own
+            cooldownShards.remove(uuid);
+        }
+        
+        return live ? state : new PlayerState(state.session(), -1);
+    }
+    
+    /**
+     * Deletes the shards whose only content is a cooldown that has run out since they
+     * were written. Runs on the writer thread.
+     */
+    private void expireShards() {
+        cooldownShards.expire(System.currentTimeMillis(), uuid -> {
+            // Pending changes are handled by the next compaction
+            if (dirty.containsKey(uuid)) {
+                return;
+            }
+            
+            try {
+                Files.deleteIfExists(shardFile(uuid).toPath());
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to delete expired shard of " + uuid + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Checks every shard once after startup, deleting those whose cooldown ran out
+     * while the server was down and tracking the rest. Since expired shards are
+     * deleted as they run out, this only reads shards that are still live. Runs on
+     * the writer thread.
+     */
+    private void pruneShards() {
+        String[] names = shardDirectory.list();
+        if (names == null) {
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        for (String name : names) {
+            if (!name.endsWith(SHARD_SUFFIX)) {
+                continue;
+            }
+            
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(name.substring(0, name.length() - SHARD_SUFFIX.length()));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            
+            // Pending changes are handled by the next compaction
+            if (dirty.containsKey(uuid)) {
+                continue;
+            }
+            
+            // Only the header is needed, shards with a session stay anyway
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(shardFile(uuid)), 16))) {
+                if (in.readInt() != SHARD_MAGIC) {
+                    throw new IOException("Not a player shard");
+                }
+                
+                long lastSessionEnd = in.readLong();
+                if (in.readBoolean()) {
+                    continue;
+                }
+                
+                if (withLiveCooldown(uuid, new PlayerState(null, lastSessionEnd), now).isEmpty()) {
+                    Files.deleteIfExists(shardFile(uuid).toPath());
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to check shard of " + uuid + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Appends a record to the current segment. Runs on the writer thread.
+     * <p>
+     * Records are framed as length, body and CRC32 so that a torn write at the end of a
+     * segment is detected and ignored on replay.
+     * 
+     * @param type The record type
+     * @param uuid The player's UUID
+     * @param time The record timestamp
+     * @param state The player's full state after the change
+     * @throws IOException If the record could not be written
+     */
+    private void append(byte type, UUID uuid, long time, PlayerState state) throws IOException {
+        if (segmentOut == null) {
+            return;
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + savedItemsLength(state));
+        DataOutputStream body = new DataOutputStream(bytes);
+        body.writeByte(type);
+        body.writeLong(uuid.getMostSignificantBits());
+        body.writeLong(uuid.getLeastSignificantBits());
+        body.writeLong(time);
+        writeState(body, state);
+        
+        byte[] record = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        
+        segmentOut.writeInt(record.length);
+        segmentOut.write(record);
+        segmentOut.writeInt((int) crc.getValue());
+    }
+    
+    /**
+     * Replays a single segment into the dirty state.
+     * 
+     * @param file The segment file
+     */
+    private void replaySegment(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                
+                byte[] record = new byte[length];
+                in.readFully(record);
+                int checksum = in.readInt();
+                
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    plugin.getLogger().warning("Discarding corrupt tail of " + file.getName());
+                    return;
+                }
+                
+                DataInputStream body = new DataInputStream(new ByteArrayInputStream(record));
+                byte type = body.readByte();
+                if (type != RECORD_START && type != RECORD_END && type != RECORD_COOLDOWN && type != RECORD_END_TIME) {
+                    throw new IOException("Unknown journal record type " + type);
+                }
+                
+                UUID uuid = new UUID(body.readLong(), body.readLong());
+                body.readLong(); // Record timestamp
+                dirty.put(uuid, readState(body, uuid));
+            }
+        } catch (EOFException e) {
+            // Torn write at the end of the segment, everything before it was applied
+            plugin.getLogger().warning("Discarding incomplete record at the end of " + file.getName());
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to replay " + file.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Writes a player's shard to a temporary file and moves it into place, or deletes
+     * the shard if there is nothing left to store.
+     * 
+     * @param uuid The player's UUID
+     * @param state The player's state
+     * @throws IOException If the shard could not be written
+     */
+    private void writeShard(UUID uuid, PlayerState state) throws IOException {
+        File shard = shardFile(uuid);
+        
+        if (state.isEmpty()) {
+            Files.deleteIfExists(shard.toPath());
+            return;
+        }
+        
+        File temp = new File(shardDirectory, shard.getName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SHARD_MAGIC);
+            writeState(out, state);
+            
+            out.flush();
+            file.getFD().sync();
+        }
+        
+        Files.move(temp.toPath(), shard.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Gets a player's latest state, including changes not yet compacted into their
+     * shard. Runs on the writer thread.
+     * 
+     * @param uuid The player's UUID
+     * @return The player's state, or {@link PlayerState#EMPTY} if nothing is stored
+     * @throws IOException If the shard is malformed
+     */
+    private PlayerState currentState(UUID uuid) throws IOException {
+        PlayerState state = dirty.get(uuid);
+        return state != null ? state : readShard(uuid);
+    }
+    
+    /**
+     * Reads a player's shard.
+     * 
+     * @param uuid The player's UUID
+     * @return The player's state, or {@link PlayerState#EMPTY} if there is no shard
+     * @throws IOException If the shard is malformed
+     */
+    private PlayerState readShard(UUID uuid) throws IOException {
+        File shard = shardFile(uuid);
+        if (!shard.exists()) {
+            return PlayerState.EMPTY;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(shard)))) {
+            if (in.readInt() != SHARD_MAGIC) {
+                throw new IOException("Not a player shard");
+            }
+            
+            return readState(in, uuid);
+        }
+    }
+    
+    /**
+     * Writes a player's state.
+     * 
+     * @param out The output
+     * @param state The player's state
+     * @throws IOException If the state could not be written
+     */
+    private void writeState(DataOutputStream out, PlayerState state) throws IOException {
+        out.writeLong(state.lastSessionEnd());
+        out.writeBoolean(state.session() != null);
+        
+        if (state.session() != null) {
+            writeSession(out, state.session());
+        }
+    }
+    
+    /**
+     * Reads a state written by {@link #writeState(DataOutputStream, PlayerState)}.
+     * 
+     * @param in The input
+     * @param uuid The player's UUID
+     * @return The player's state
+     * @throws IOException If the state is malformed
+     */
+    private PlayerState readState(DataInputStream in, UUID uuid) throws IOException {
+        long lastSessionEnd = in.readLong();
+        SessionState session = in.readBoolean() ? readSession(in, uuid) : null;
+        
+        return new PlayerState(session, lastSessionEnd);
+    }
+    
+    /**
+     * Writes a session's timing, game mode and saved items.
+     * 
+     * @param out The output
+     * @param session The session
+     * @throws IOException If the session could not be written
+     */
+    private void writeSession(DataOutputStream out, SessionState session) throws IOException {
+        out.writeLong(session.startTime());
+        out.writeLong(session.endTime());
+        out.writeUTF(session.previousGameMode().name());
+        
+        out.writeInt(session.savedItems().length);
+        out.write(session.savedItems());
+    }
+    
+    /**
+     * Reads a session written by {@link #writeSession(DataOutputStream, SessionState)}.
+     * 
+     * @param in The input
+     * @param uuid The player's UUID
+     * @return The session
+     * @throws IOException If the session is malformed
+     */
+    private SessionState readSession(DataInputStream in, UUID uuid) throws IOException {
+        long startTime = in.readLong();
+        long endTime = in.readLong();
+        GameMode previousGameMode = GameMode.valueOf(in.readUTF());
+        
+        byte[] savedItems = new byte[in.readInt()];
+        in.readFully(savedItems);
+        
+        return new SessionState(uuid, startTime, endTime, previousGameMode, savedItems);
+    }
+    
+    /**
+     * Gets the length of the saved items in a state, for sizing buffers.
+     * 
+     * @param state The player's state
+     * @return The length in bytes
+     */
+    private int savedItemsLength(PlayerState state) {
+        return state.session() != null ? state.session().savedItems().length : 0;
+    }
+    
+    /**
+     * Opens the current segment for appending.
+     */
+    private void openSegment() {
+        try {
+            segmentStream = new FileOutputStream(segmentFile(generation), true);
+            segmentOut = new DataOutputStream(new BufferedOutputStream(segmentStream));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open session journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Flushes and closes the current segment.
+     */
+    private void closeSegment() {
+        if (segmentOut == null) {
+            return;
+        }
+        
+        try {
+            segmentOut.close();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to close session journal: " + e.getMessage());
+        }
+        
+        segmentOut = null;
+        segmentStream = null;
+    }
+    
+    /**
+     * Checks if any player shard exists.
+     * 
+     * @return True if at least one shard exists, false otherwise
+     */
+    private boolean hasShards() {
+        String[] names = shardDirectory.list();
+        return names != null && names.length > 0;
+    }
+    
+    /**
+     * Lists the generations of all segments on disk in ascending order.
+     * 
+     * @return The segment generations
+     */
+    private long[] listSegments() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        
+        long[] segments = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    long segment = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments[count++] = segment;
+                } catch (NumberFormatException ignored) {
+                    // Not a segment
+                }
+            }
+        }
+        
+        long[] result = Arrays.copyOf(segments, count);
+        Arrays.sort(result);
+        return result;
+    }
+    
+    /**
+     * Gets the file of a segment.
+     * 
+     * @param segment The segment generation
+     * @return The segment file
+     */
+    private File segmentFile(long segment) {
+        return new File(directory, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+    
+    /**
+     * Gets the shard file of a player.
+     * 
+     * @param uuid The player's UUID
+     * @return The shard file
+     */
+    private File shardFile(UUID uuid) {
+        return new File(shardDirectory, uuid + SHARD_SUFFIX);
+    }
+    
+    /**
+     * A writer thread task that may fail with an I/O error.
+     */
+    @FunctionalInterface
+    private interface IoTask {
+        void run() throws IOException;
+    }
+    
+    /**
+     * Works out a player's state after a change on the writer thread.
+     */
+    @FunctionalInterface
+    private interface StateChange {
+        PlayerState apply() throws IOException;
+    }
+}
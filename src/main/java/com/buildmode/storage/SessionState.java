@@ -0,0 +1,42 @@
+package com.buildmode.storage;
+
+import com.buildmode.models.BuildSession;
+import org.bukkit.GameMode;
+
+import java.util.UUID;
+
+/**
+ * Immutable copy of the persisted parts of a build session.
+ * <p>
+ * The saved items array is shared with the session it was copied from; sessions
+ * replace that array, they never modify it.
+ * 
+ * @param uuid The player's UUID
+ * @param startTime The start time in milliseconds
+ * @param endTime The end time in milliseconds
+ * @param previousGameMode The game mode to restore
+ * @param savedItems The saved items as encoded by {@link ItemStackCodec}
+ */
+public record SessionState(UUID uuid, long startTime, long endTime,
+                           GameMode previousGameMode, byte[] savedItems) {
+    
+    /**
+     * Copies the persisted parts of a session.
+     * 
+     * @param session The session
+     * @return The session state
+     */
+    public static SessionState of(BuildSession session) {
+        return new SessionState(session.getPlayerUUID(), session.getStartTime(), session.getEndTime(),
+                session.getPreviousGameMode(), session.getSavedItemsData());
+    }
+    
+    /**
+     * Creates a build session from this state.
+     * 
+     * @return The build session
+     */
+    public BuildSession toSession() {
+        return new BuildSession(uuid, startTime, endTime, savedItems, previousGameMode);
+    }
+}
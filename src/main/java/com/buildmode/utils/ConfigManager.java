@@ -1,25 +1,32 @@
 package com.buildmode.utils;
 
 import com.buildmode.BuildMode;
+import com.buildmode.rules.RuleSet;
 import org.bukkit.Material;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 /**
  * Manages the plugin configuration.
+ * <p>
+ * Each reload parses the configuration into an immutable {@link ConfigSnapshot} and
+ * publishes it through a volatile field, so the getters below are plain field reads
+ * and safe from any thread.
+ * <p>
+ * The material lists and the rules are the expensive parts to compile. The raw values
+ * of those sections are kept, and a section is only compiled again when its values
+ * changed since the previous snapshot.
  */
 public class ConfigManager {
     
     private final BuildMode plugin;
-    private Set<Material> blacklistedMaterials;
-    private Set<Material> whitelistedMaterials;
-    private boolean useBlacklist;
+    private volatile ConfigSnapshot snapshot;
+    private List<Object> materialSection;
+    private List<Object> ruleSection;
     private File sessionsFile;
     
     /**
@@ -34,59 +41,68 @@ public class ConfigManager {
     }
     
     /**
-     * Reloads the configuration.
+     * Reloads the configuration from disk and publishes a new snapshot of it.
+     * 
+     * @return The previous snapshot, or null on the first load
      */
-    public void reload() {
+    public ConfigSnapshot reload() {
         plugin.reloadConfig();
-        loadMaterialLists();
+        return apply(plugin.getConfig());
     }
     
     /**
-     * Loads the blacklist and whitelist of materials from the configuration.
+     * Parses a configuration and publishes the result as the new snapshot. Safe to
+     * call from any thread; concurrent calls publish one after the other.
+     * 
+     * @param config The configuration
+     * @return The previous snapshot, or null on the first load
      */
-    private void loadMaterialLists() {
-        FileConfiguration config = plugin.getConfig();
+    public synchronized ConfigSnapshot apply(FileConfiguration config) {
+        ConfigSnapshot previous = snapshot;
         
-        // Determine if we're using blacklist or whitelist
-        useBlacklist = config.getString("restriction-mode", "blacklist").equalsIgnoreCase("blacklist");
+        List<Object> materials = List.of(config.getString("restriction-mode", "blacklist").toLowerCase(),
+                config.getStringList("blacklist"), config.getStringList("whitelist"));
+        List<Object> rules = List.of(config.getMapList("item-rules"), config.getMapList("container-rules"));
         
-        // Load blacklist
-        blacklistedMaterials = new HashSet<>();
-        List<String> blacklist = config.getStringList("blacklist");
-        for (String materialName : blacklist) {
-            try {
-                Material material = Material.valueOf(materialName.toUpperCase());
-                blacklistedMaterials.add(material);
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("Invalid material in blacklist: " + materialName);
-            }
-        }
+        // Rules fall back to the material lists, so new lists mean new rules too
+        boolean materialsChanged = previous == null || !materials.equals(materialSection);
+        boolean rulesChanged = materialsChanged || !rules.equals(ruleSection);
         
-        // Load whitelist
-        whitelistedMaterials = new HashSet<>();
-        List<String> whitelist = config.getStringList("whitelist");
-        for (String materialName : whitelist) {
-            try {
-                Material material = Material.valueOf(materialName.toUpperCase());
-                whitelistedMaterials.add(material);
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("Invalid material in whitelist: " + materialName);
-            }
-        }
+        materialSection = materials;
+        ruleSection = rules;
+        snapshot = ConfigSnapshot.load(config, plugin.getLogger(),
+                materialsChanged ? null : previous, rulesChanged ? null : previous);
+        return previous;
     }
     
     /**
-     * Checks if a material is allowed in build mode.
+     * Gets the current configuration snapshot. Code that reads several settings
+     * together should read them from one snapshot.
+     * 
+     * @return The configuration snapshot
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Checks if a material is allowed in build mode. This is a single read of the
+     * compiled table, whichever restriction mode is configured.
      * 
      * @param material The material to check
      * @return True if the material is allowed, false otherwise
      */
     public boolean isMaterialAllowed(Material material) {
-        if (useBlacklist) {
-            return !blacklistedMaterials.contains(material);
-        } else {
-            return whitelistedMaterials.contains(material);
-        }
+        return snapshot.isMaterialAllowed(material);
+    }
+    
+    /**
+     * Gets the compiled restriction rules.
+     * 
+     * @return The restriction rules
+     */
+    public RuleSet getRules() {
+        return snapshot.rules();
     }
     
     /**
@@ -95,7 +111,7 @@ public class ConfigManager {
      * @return The build mode duration in minutes
      */
     public int getBuildDurationMinutes() {
-        return plugin.getConfig().getInt("build-duration-minutes", 60);
+        return snapshot.buildDurationMinutes();
     }
     
     /**
@@ -104,7 +120,7 @@ public class ConfigManager {
      * @return The cooldown in minutes
      */
     public int getCooldownMinutes() {
-        return plugin.getConfig().getInt("cooldown-minutes", 1);
+        return snapshot.cooldownMinutes();
     }
     
     /**
@@ -113,7 +129,7 @@ public class ConfigManager {
      * @return True if the boss bar is enabled, false otherwise
      */
     public boolean isBossBarEnabled() {
-        return plugin.getConfig().getBoolean("bossbar", true);
+        return snapshot.bossBar();
     }
     
     /**
@@ -122,7 +138,34 @@ public class ConfigManager {
      * @return True if the scoreboard is enabled, false otherwise
      */
     public boolean isScoreboardEnabled() {
-        return plugin.getConfig().getBoolean("scoreboard", false);
+        return snapshot.scoreboard();
+    }
+    
+    /**
+     * Checks if blocks placed in build mode drop nothing when they are broken.
+     * 
+     * @return True if drops of placed blocks are suppressed, false otherwise
+     */
+    public boolean isPlacedDropsSuppressed() {
+        return snapshot.placedDropsSuppressed();
+    }
+    
+    /**
+     * Gets the time a rollback may spend restoring blocks per tick.
+     * 
+     * @return The time budget in milliseconds
+     */
+    public long getRollbackBudgetMillis() {
+        return snapshot.rollbackBudgetMillis();
+    }
+    
+    /**
+     * Gets the number of sessions per player whose block changes are kept for rollbacks.
+     * 
+     * @return The number of sessions
+     */
+    public int getRollbackKeepSessions() {
+        return snapshot.rollbackKeepSessions();
     }
     
     /**
@@ -131,25 +174,52 @@ public class ConfigManager {
      * @return True if redstone components are allowed, false otherwise
      */
     public boolean isRedstoneAllowed() {
-        return plugin.getConfig().getBoolean("allowed-redstone", true);
+        return snapshot.redstoneAllowed();
+    }
+    
+    /**
+     * Gets the minimum time between two feedback messages to the same player.
+     * 
+     * @return The feedback window in milliseconds
+     */
+    public long getFeedbackWindowMillis() {
+        return snapshot.feedbackWindowMillis();
+    }
+    
+    /**
+     * Gets the maximum number of inventory slots the background audit checks per tick.
+     * 
+     * @return The number of slots
+     */
+    public int getAuditSlotsPerTick() {
+        return snapshot.auditSlotsPerTick();
+    }
+    
+    /**
+     * Gets the time the background audit may spend per tick.
+     * 
+     * @return The time budget in microseconds
+     */
+    public long getAuditBudgetMicros() {
+        return snapshot.auditBudgetMicros();
     }
     
     /**
      * Gets the blacklisted materials.
      * 
-     * @return The blacklisted materials
+     * @return The blacklisted materials, unmodifiable
      */
     public Set<Material> getBlacklistedMaterials() {
-        return new HashSet<>(blacklistedMaterials);
+        return snapshot.blacklist();
     }
     
     /**
      * Gets the whitelisted materials.
      * 
-     * @return The whitelisted materials
+     * @return The whitelisted materials, unmodifiable
      */
     public Set<Material> getWhitelistedMaterials() {
-        return new HashSet<>(whitelistedMaterials);
+        return snapshot.whitelist();
     }
     
     /**
@@ -158,7 +228,7 @@ public class ConfigManager {
      * @return True if using a blacklist, false if using a whitelist
      */
     public boolean isUsingBlacklist() {
-        return useBlacklist;
+        return snapshot.useBlacklist();
     }
     
     /**
@@ -171,20 +241,7 @@ public class ConfigManager {
     }
     
     /**
-     * Saves the sessions configuration.
-     * 
-     * @param config The configuration to save
-     */
-    public void saveSessionsConfig(YamlConfiguration config) {
-        try {
-            config.save(sessionsFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save sessions: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Loads the sessions configuration.
+     * Loads the sessions configuration written by older versions.
      * 
      * @return The sessions configuration
      */
@@ -0,0 +1,146 @@
+package com.buildmode.utils;
+
+import com.buildmode.rules.RuleSet;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Immutable, typed copy of the plugin configuration.
+ * <p>
+ * The configuration is parsed once per reload into a snapshot, which the
+ * {@link ConfigManager} publishes through a single volatile field. Reading a setting
+ * is then a field access instead of a path lookup in the YAML tree, and code that
+ * reads several settings from one snapshot always sees them from the same reload.
+ * 
+ * @param buildDurationMinutes The session duration in minutes
+ * @param cooldownMinutes The cooldown between sessions in minutes
+ * @param bossBar True if the boss bar is shown
+ * @param scoreboard True if the scoreboard is shown
+ * @param redstoneAllowed True if redstone components are allowed
+ * @param feedbackWindowMillis The minimum time between two feedback messages to a player
+ * @param auditSlotsPerTick The number of slots the inventory audit checks per tick
+ * @param auditBudgetMicros The time the inventory audit may spend per tick
+ * @param placedDropsSuppressed True if blocks placed in build mode drop nothing
+ * @param rollbackKeepSessions The number of sessions per player kept for rollbacks
+ * @param rollbackBudgetMillis The time a rollback may spend per tick
+ * @param useBlacklist True if the blacklist is used, false for the whitelist
+ * @param blacklist The blacklisted materials
+ * @param whitelist The whitelisted materials
+ * @param allowedMaterials One bit per material ordinal, set if the material is allowed
+ * @param rules The compiled restriction rules
+ */
+public record ConfigSnapshot(int buildDurationMinutes, int cooldownMinutes, boolean bossBar, boolean scoreboard,
+                             boolean redstoneAllowed, long feedbackWindowMillis, int auditSlotsPerTick,
+                             long auditBudgetMicros, boolean placedDropsSuppressed, int rollbackKeepSessions,
+                             long rollbackBudgetMillis, boolean useBlacklist, Set<Material> blacklist,
+                             Set<Material> whitelist, long[] allowedMaterials, RuleSet rules) {
+    
+    /**
+     * Checks if a material is allowed by the blacklist or whitelist. This is a single
+     * read of the compiled table, whichever restriction mode is configured.
+     * 
+     * @param material The material to check
+     * @return True if the material is allowed, false otherwise
+     */
+    public boolean isMaterialAllowed(Material material) {
+        int ordinal = material.ordinal();
+        return (allowedMaterials[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+    
+    /**
+     * Parses a configuration.
+     * 
+     * @param config The configuration
+     * @param logger The logger invalid entries are reported to
+     * @return The snapshot
+     */
+    public static ConfigSnapshot load(FileConfiguration config, Logger logger) {
+        return load(config, logger, null, null);
+    }
+    
+    /**
+     * Parses a configuration, taking the sections that did not change from earlier
+     * snapshots instead of compiling them again.
+     * 
+     * @param config The configuration
+     * @param logger The logger invalid entries are reported to
+     * @param materialSource A snapshot whose material lists are still current, or null
+     * @param ruleSource A snapshot whose rules are still current, or null
+     * @return The snapshot
+     */
+    public static ConfigSnapshot load(FileConfiguration config, Logger logger, ConfigSnapshot materialSource,
+                                      ConfigSnapshot ruleSource) {
+        boolean useBlacklist;
+        Set<Material> blacklist;
+        Set<Material> whitelist;
+        long[] allowedMaterials;
+        
+        if (materialSource != null) {
+            useBlacklist = materialSource.useBlacklist();
+            blacklist = materialSource.blacklist();
+            whitelist = materialSource.whitelist();
+            allowedMaterials = materialSource.allowedMaterials();
+        } else {
+            useBlacklist = config.getString("restriction-mode", "blacklist").equalsIgnoreCase("blacklist");
+            blacklist = Set.copyOf(parseMaterials(config, "blacklist", logger));
+            whitelist = Set.copyOf(parseMaterials(config, "whitelist", logger));
+            
+            // Compile both modes into one bit per material, indexed by ordinal
+            Material[] materials = Material.values();
+            allowedMaterials = new long[(materials.length + 63) >>> 6];
+            for (Material material : materials) {
+                boolean allowed = useBlacklist ? !blacklist.contains(material) : whitelist.contains(material);
+                if (allowed) {
+                    allowedMaterials[material.ordinal() >>> 6] |= 1L << material.ordinal();
+                }
+            }
+        }
+        
+        // Rules fall back to the material lists, so they are compiled after them
+        long[] allowed = allowedMaterials;
+        RuleSet rules = ruleSource != null ? ruleSource.rules() : RuleSet.load(config, logger,
+                material -> (allowed[material.ordinal() >>> 6] & (1L << material.ordinal())) != 0);
+        
+        return new ConfigSnapshot(
+                config.getInt("build-duration-minutes", 60),
+                config.getInt("cooldown-minutes", 1),
+                config.getBoolean("bossbar", true),
+                config.getBoolean("scoreboard", false),
+                config.getBoolean("allowed-redstone", true),
+                config.getLong("feedback-window-millis", 1000),
+                Math.max(1, config.getInt("audit-slots-per-tick", 16)),
+                config.getLong("audit-budget-micros", 200),
+                config.getBoolean("suppress-placed-drops", true),
+                Math.max(1, config.getInt("rollback-keep-sessions", 5)),
+                config.getLong("rollback-budget-millis", 5),
+                useBlacklist,
+                blacklist,
+                whitelist,
+                allowedMaterials,
+                rules);
+    }
+    
+    /**
+     * Parses a list of material names.
+     * 
+     * @param config The configuration
+     * @param path The path of the list
+     * @param logger The logger invalid names are reported to
+     * @return The materials
+     */
+    private static Set<Material> parseMaterials(FileConfiguration config, String path, Logger logger) {
+        Set<Material> materials = EnumSet.noneOf(Material.class);
+        for (String materialName : config.getStringList(path)) {
+            try {
+                materials.add(Material.valueOf(materialName.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Invalid material in " + path + ": " + materialName);
+            }
+        }
+        return materials;
+    }
+}
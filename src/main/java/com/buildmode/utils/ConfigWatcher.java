@@ -0,0 +1,190 @@
+package com.buildmode.utils;
+
+import com.buildmode.BuildMode;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the configuration when config.yml changes on disk.
+ * <p>
+ * A watcher thread waits for changes to the data folder. Editors usually write a file
+ * in several steps, so each change only restarts a short timer and the file is read
+ * once the writes have settled. Reading and parsing happen on a background thread;
+ * only handing the new snapshot to the managers runs on the global region. A file
+ * that cannot be parsed is ignored and the current configuration stays in place.
+ * Like {@code /bm reload}, missing settings and sections fall back to the defaults in
+ * the plugin jar, so both ways of reloading see the same configuration.
+ */
+public class ConfigWatcher {
+    
+    private static final long DEBOUNCE_MILLIS = 500;
+    
+    private final BuildMode plugin;
+    private final Path file;
+    private final YamlConfiguration defaults;
+    private final ScheduledThreadPoolExecutor loader;
+    private WatchService watchService;
+    private ScheduledFuture<?> pendingLoad;
+    
+    /**
+     * Creates a new config watcher.
+     * 
+     * @param plugin The plugin instance
+     */
+    public ConfigWatcher(BuildMode plugin) {
+        this.plugin = plugin;
+        this.file = plugin.getDataFolder().toPath().resolve("config.yml");
+        this.defaults = loadDefaults(plugin);
+        this.loader = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "BuildMode Config Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Reads the default configuration from the plugin jar.
+     * 
+     * @param plugin The plugin instance
+     * @return The defaults, or null if they cannot be read
+     */
+    private static YamlConfiguration loadDefaults(BuildMode plugin) {
+        InputStream resource = plugin.getResource("config.yml");
+        if (resource == null) {
+            return null;
+        }
+        
+        try (InputStreamReader reader = new InputStreamReader(resource, StandardCharsets.UTF_8)) {
+            return YamlConfiguration.loadConfiguration(reader);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not read the default config.yml: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Starts watching config.yml.
+     */
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not watch config.yml for changes: " + e.getMessage());
+            return;
+        }
+        
+        Thread thread = new Thread(this::watch, "BuildMode Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stops watching config.yml and drops a pending reload.
+     */
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not stop watching config.yml: " + e.getMessage());
+            }
+        }
+        
+        loader.shutdownNow();
+    }
+    
+    /**
+     * Waits for changes to the data folder until the watch service is closed. Runs on
+     * the watcher thread.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // An overflow may have swallowed a change to the file
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                
+                if (changed) {
+                    scheduleLoad();
+                }
+                
+                if (!key.reset()) {
+                    plugin.getLogger().warning("Stopped watching config.yml, the data folder is no longer accessible.");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+    
+    /**
+     * Loads the file once no further change has come in for a short while. Runs on
+     * the watcher thread.
+     */
+    private void scheduleLoad() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel(false);
+        }
+        
+        try {
+            pendingLoad = loader.schedule(this::load, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Stopped
+        }
+    }
+    
+    /**
+     * Parses config.yml and publishes it if anything changed. Runs on the loader thread.
+     */
+    private void load() {
+        YamlConfiguration config = new YamlConfiguration();
+        if (defaults != null) {
+            config.setDefaults(defaults);
+        }
+        
+        try {
+            config.load(file.toFile());
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().warning("Ignoring the change to config.yml, it could not be read: " + e.getMessage());
+            return;
+        }
+        
+        ConfigManager configManager = plugin.getConfigManager();
+        ConfigSnapshot previous = configManager.apply(config);
+        
+        // Saving the file without changes, or only changing comments, needs no reload
+        if (previous.equals(configManager.getSnapshot()) || !plugin.isEnabled()) {
+            return;
+        }
+        
+        Bukkit.getGlobalRegionScheduler().execute(plugin, () -> {
+            plugin.applyConfig(previous);
+            plugin.getLogger().info("Applied changes to config.yml.");
+        });
+    }
+}
@@ -0,0 +1,195 @@
+package com.buildmode.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel that reports deadlines as they come due.
+ * <p>
+ * The wheel has {@link #LEVELS} levels of {@link #SLOTS} slots. A slot on level 0
+ * covers one tick, a slot on each higher level covers a whole rotation of the level
+ * below it. Deadlines are filed on the lowest level whose range reaches them and
+ * move down a level whenever the level below starts a new rotation, so each tick only
+ * touches the deadlines that are due or about to move. Scheduling, rescheduling and
+ * cancelling are O(1); replaced deadlines are left in their slot and skipped.
+ * <p>
+ * Ticks are derived from the wall clock, so deadlines stay accurate to one tick even
+ * if the server falls behind. Not thread-safe, every call must come from the same
+ * thread.
+ */
+public class ExpiryWheel {
+    
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+    private static final long SPAN = 1L << (BITS * LEVELS);
+    
+    private final long tickMillis;
+    private final long originMillis;
+    private final List<Entry>[][] wheel;
+    private final Map<UUID, Long> deadlines;
+    private List<Entry> spare;
+    private long currentTick;
+    
+    /**
+     * Creates a new expiry wheel.
+     * 
+     * @param tickMillis The length of a tick in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public ExpiryWheel(long tickMillis) {
+        this.tickMillis = tickMillis;
+        this.originMillis = System.currentTimeMillis();
+        this.wheel = new List[LEVELS][SLOTS];
+        this.deadlines = new HashMap<>();
+        this.spare = new ArrayList<>();
+        this.currentTick = 0;
+        
+        for (List<Entry>[] level : wheel) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new ArrayList<>();
+            }
+        }
+    }
+    
+    /**
+     * Schedules a deadline, replacing any earlier deadline for the same key.
+     * 
+     * @param uuid The key
+     * @param deadlineMillis The deadline in milliseconds
+     */
+    public void schedule(UUID uuid, long deadlineMillis) {
+        // First tick that starts at or after the deadline
+        long tick = Math.max(-Math.floorDiv(originMillis - deadlineMillis, tickMillis), currentTick + 1);
+        
+        Long previous = deadlines.put(uuid, tick);
+        if (previous != null && previous == tick) {
+            return;
+        }
+        
+        insert(new Entry(uuid, tick));
+    }
+    
+    /**
+     * Cancels the deadline of a key.
+     * 
+     * @param uuid The key
+     */
+    public void cancel(UUID uuid) {
+        deadlines.remove(uuid);
+    }
+    
+    /**
+     * Advances the wheel to the current time and reports every deadline that is due.
+     * A key is no longer scheduled once it has been reported.
+     * 
+     * @param now The current time in milliseconds
+     * @param onDue Called with the key of every due deadline
+     */
+    public void advance(long now, Consumer<UUID> onDue) {
+        long targetTick = Math.floorDiv(now - originMillis, tickMillis);
+        
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            
+            // Swap the slot out so due callbacks may schedule again
+            int index = (int) (currentTick & MASK);
+            List<Entry> due = wheel[0][index];
+            wheel[0][index] = spare;
+            
+            for (Entry entry : due) {
+                if (isStale(entry)) {
+                    continue;
+                }
+                
+                if (entry.tick() > currentTick) {
+                    insert(entry);
+                    continue;
+                }
+                
+                deadlines.remove(entry.uuid());
+                onDue.accept(entry.uuid());
+            }
+            
+            due.clear();
+            spare = due;
+        }
+    }
+    
+    /**
+     * Gets the number of scheduled deadlines.
+     * 
+     * @return The number of scheduled deadlines
+     */
+    public int size() {
+        return deadlines.size();
+    }
+    
+    /**
+     * Moves the deadlines of every level that starts a new rotation this tick down
+     * to the levels below.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            // Only continue while the level below has just wrapped around
+            if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) {
+                return;
+            }
+            
+            int index = (int) ((currentTick >>> (BITS * level)) & MASK);
+            List<Entry> slot = wheel[level][index];
+            wheel[level][index] = new ArrayList<>();
+            
+            for (Entry entry : slot) {
+                if (!isStale(entry)) {
+                    insert(entry);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Files a deadline on the lowest level whose range reaches it.
+     * 
+     * @param entry The deadline
+     */
+    private void insert(Entry entry) {
+        long delta = entry.tick() - currentTick;
+        
+        // Deadlines beyond the top level wait in its furthest slot and are filed again
+        long tick = delta < SPAN ? entry.tick() : currentTick + SPAN - 1;
+        
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        
+        wheel[level][(int) ((tick >>> (BITS * level)) & MASK)].add(entry);
+    }
+    
+    /**
+     * Checks if a deadline has been cancelled or replaced since it was filed.
+     * 
+     * @param entry The deadline
+     * @return True if the deadline is stale, false otherwise
+     */
+    private boolean isStale(Entry entry) {
+        Long tick = deadlines.get(entry.uuid());
+        return tick == null || tick != entry.tick();
+    }
+    
+    /**
+     * A deadline filed in the wheel.
+     * 
+     * @param uuid The key
+     * @param tick The tick the deadline is due on
+     */
+    private record Entry(UUID uuid, long tick) {
+    }
+}
@@ -0,0 +1,36 @@
+package com.buildmode.utils;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+/**
+ * Action bar messages shown when build mode blocks something. The components are
+ * built once and reused for every message.
+ */
+public enum Feedback {
+    
+    ILLEGAL_ITEM(Component.text("✗ Not a Build-Mode item", NamedTextColor.RED)),
+    CONTAINER_INTERACT(Component.text("✗ Cannot interact with containers in Build Mode", NamedTextColor.RED)),
+    CONTAINER_OPEN(Component.text("✗ Cannot open containers in Build Mode", NamedTextColor.RED)),
+    DROP(Component.text("✗ Cannot drop items in Build Mode", NamedTextColor.RED));
+    
+    private final Component component;
+    
+    /**
+     * Creates a new feedback message.
+     * 
+     * @param component The message
+     */
+    Feedback(Component component) {
+        this.component = component;
+    }
+    
+    /**
+     * Gets the message.
+     * 
+     * @return The message
+     */
+    public Component getComponent() {
+        return component;
+    }
+}
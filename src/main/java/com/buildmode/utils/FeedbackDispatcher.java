@@ -0,0 +1,105 @@
+package com.buildmode.utils;
+
+import com.buildmode.BuildMode;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends build mode feedback to players without flooding them.
+ * <p>
+ * Messages are not sent right away. The first message of a burst schedules a flush
+ * on the player's scheduler for the next tick; later messages in the same tick only
+ * replace the pending one. After a message has been sent, the next flush waits until
+ * the configured window has passed, so each player gets at most one action bar per
+ * window and always sees the latest message.
+ */
+public class FeedbackDispatcher {
+    
+    private static final long TICK_MILLIS = 50;
+    
+    private final BuildMode plugin;
+    private final Map<UUID, Channel> channels;
+    private volatile long windowMillis;
+    
+    /**
+     * Creates a new feedback dispatcher.
+     * 
+     * @param plugin The plugin instance
+     */
+    public FeedbackDispatcher(BuildMode plugin) {
+        this.plugin = plugin;
+        this.channels = new ConcurrentHashMap<>();
+        reload();
+    }
+    
+    /**
+     * Queues a message for a player. Must be called on the player's thread, which is
+     * where their events fire.
+     * 
+     * @param player The player
+     * @param feedback The message
+     */
+    public void send(Player player, Feedback feedback) {
+        UUID uuid = player.getUniqueId();
+        Channel channel = channels.computeIfAbsent(uuid, key -> new Channel());
+        
+        channel.pending = feedback;
+        if (channel.scheduled) {
+            return;
+        }
+        
+        // Flush next tick, or once the window since the last message has passed
+        long wait = channel.lastSent + windowMillis - System.currentTimeMillis();
+        long delayTicks = Math.max(1, (wait + TICK_MILLIS - 1) / TICK_MILLIS);
+        
+        channel.scheduled = true;
+        player.getScheduler().runDelayed(plugin, task -> flush(player, channel), () -> channels.remove(uuid), delayTicks);
+    }
+    
+    /**
+     * Forgets a player's pending feedback when they quit.
+     * 
+     * @param uuid The player's UUID
+     */
+    public void remove(UUID uuid) {
+        channels.remove(uuid);
+    }
+    
+    /**
+     * Reloads the feedback window from the configuration.
+     */
+    public void reload() {
+        windowMillis = plugin.getConfigManager().getFeedbackWindowMillis();
+    }
+    
+    /**
+     * Sends a player's latest pending message. Runs on the player's thread.
+     * 
+     * @param player The player
+     * @param channel The player's channel
+     */
+    private void flush(Player player, Channel channel) {
+        channel.scheduled = false;
+        
+        Feedback feedback = channel.pending;
+        channel.pending = null;
+        if (feedback == null) {
+            return;
+        }
+        
+        channel.lastSent = System.currentTimeMillis();
+        player.sendActionBar(feedback.getComponent());
+    }
+    
+    /**
+     * Feedback state of a single player. Only touched on the player's thread.
+     */
+    private static final class Channel {
+        private Feedback pending;
+        private boolean scheduled;
+        private long lastSent;
+    }
+}
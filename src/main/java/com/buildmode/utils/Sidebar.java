@@ -0,0 +1,99 @@
+package com.buildmode.utils;
+
+import io.papermc.paper.scoreboard.numbers.NumberFormat;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scoreboard.Criteria;
+import org.bukkit.scoreboard.DisplaySlot;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+
+/**
+ * A sidebar shown to one player, updated line by line.
+ * <p>
+ * Every line is a fixed entry that renders as nothing, and its text is the prefix of
+ * a team of its own. Changing a line therefore only changes that team's prefix, and
+ * lines whose value did not change send nothing at all. The scoreboard, objective
+ * and teams are created once when the sidebar is shown and reused until it is hidden.
+ * Must be used on the player's thread.
+ */
+public final class Sidebar {
+    
+    private final Player player;
+    private final Scoreboard previous;
+    private final Scoreboard scoreboard;
+    private final String[] labels;
+    private final String[] values;
+    private final Team[] teams;
+    
+    /**
+     * Creates a sidebar and shows it to a player in place of their current scoreboard.
+     * 
+     * @param player The player
+     * @param title The title of the sidebar
+     * @param labels The labels of the lines from top to bottom, at most 16
+     * @throws UnsupportedOperationException If the server does not support scoreboards
+     */
+    public Sidebar(Player player, Component title, String... labels) {
+        this.player = player;
+        this.previous = player.getScoreboard();
+        this.scoreboard = Bukkit.getScoreboardManager().getNewScoreboard();
+        this.labels = labels.clone();
+        this.values = new String[labels.length];
+        this.teams = new Team[labels.length];
+        
+        Objective objective = scoreboard.registerNewObjective("buildmode", Criteria.DUMMY, title);
+        objective.numberFormat(NumberFormat.blank());
+        objective.setDisplaySlot(DisplaySlot.SIDEBAR);
+        
+        for (int i = 0; i < labels.length; i++) {
+            // A lone color code is an entry that is unique but shows no text
+            String entry = "§" + Integer.toHexString(i);
+            Team team = scoreboard.registerNewTeam("line" + i);
+            team.addEntry(entry);
+            objective.getScore(entry).setScore(labels.length - i);
+            teams[i] = team;
+        }
+        
+        player.setScoreboard(scoreboard);
+    }
+    
+    /**
+     * Sets the value of a line, sending it only if it changed.
+     * 
+     * @param line The index of the line, from the top
+     * @param value The value shown after the line's label
+     */
+    public void setValue(int line, String value) {
+        if (value.equals(values[line])) {
+            return;
+        }
+        
+        values[line] = value;
+        teams[line].prefix(Component.text(labels[line], NamedTextColor.GOLD)
+                .append(Component.text(value, NamedTextColor.WHITE)));
+    }
+    
+    /**
+     * Checks if the sidebar belongs to a player object.
+     * 
+     * @param player The player
+     * @return True if the sidebar was created for this player object, false otherwise
+     */
+    public boolean isShownTo(Player player) {
+        return this.player == player;
+    }
+    
+    /**
+     * Hides the sidebar and gives the player back the scoreboard they had before.
+     */
+    public void hide() {
+        // Leave the player's scoreboard alone if another plugin has replaced ours since
+        if (player.isOnline() && player.getScoreboard() == scoreboard) {
+            player.setScoreboard(previous);
+        }
+    }
+}
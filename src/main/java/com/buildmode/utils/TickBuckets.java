@@ -0,0 +1,103 @@
+package com.buildmode.utils;
+
+import com.buildmode.managers.SessionRegistry;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Spreads per-player work over several ticks.
+ * <p>
+ * Every player is assigned to one of a fixed number of buckets by the hash of their
+ * UUID, and each tick hands out the next bucket. With as many buckets as ticks in the
+ * update interval, every player is still visited once per interval, but each tick only
+ * does its share of the work instead of one tick doing all of it. The assignment is
+ * only rebuilt when a session starts or ends.
+ * <p>
+ * Not thread-safe; meant to be used from a single repeating task.
+ */
+public final class TickBuckets {
+    
+    private static final UUID[] EMPTY = new UUID[0];
+    
+    private final int count;
+    private UUID[][] buckets;
+    private long version;
+    private int next;
+    
+    /**
+     * Creates new tick buckets.
+     * 
+     * @param count The number of buckets, the number of ticks between two visits of a player
+     */
+    public TickBuckets(int count) {
+        this.count = count;
+        this.buckets = new UUID[count][];
+        this.version = -1;
+        Arrays.fill(buckets, EMPTY);
+    }
+    
+    /**
+     * Gets the players whose turn it is this tick and moves on to the next bucket.
+     * 
+     * @param snapshot The current sessions
+     * @return The players in this tick's bucket
+     */
+    public UUID[] next(SessionRegistry.Snapshot snapshot) {
+        if (snapshot.version() != version) {
+            assign(snapshot);
+        }
+        
+        UUID[] bucket = buckets[next];
+        next = (next + 1) % count;
+        return bucket;
+    }
+    
+    /**
+     * Checks if the assignment was built from an older view of the sessions.
+     * 
+     * @param snapshot The current sessions
+     * @return True if a session started or ended since the last call to {@link #next}
+     */
+    public boolean isStale(SessionRegistry.Snapshot snapshot) {
+        return snapshot.version() != version;
+    }
+    
+    /**
+     * Assigns the players of a snapshot to buckets.
+     * 
+     * @param snapshot The sessions
+     */
+    private void assign(SessionRegistry.Snapshot snapshot) {
+        int[] sizes = new int[count];
+        for (UUID uuid : snapshot.sessions().keySet()) {
+            sizes[bucketOf(uuid)]++;
+        }
+        
+        UUID[][] assigned = new UUID[count][];
+        for (int i = 0; i < count; i++) {
+            assigned[i] = sizes[i] == 0 ? EMPTY : new UUID[sizes[i]];
+            sizes[i] = 0;
+        }
+        
+        for (UUID uuid : snapshot.sessions().keySet()) {
+            int bucket = bucketOf(uuid);
+            assigned[bucket][sizes[bucket]++] = uuid;
+        }
+        
+        buckets = assigned;
+        version = snapshot.version();
+    }
+    
+    /**
+     * Gets the bucket a player belongs to. The same player always lands in the same
+     * bucket, so they keep their place in the rotation when others join or leave.
+     * 
+     * @param uuid The player's UUID
+     * @return The bucket index
+     */
+    private int bucketOf(UUID uuid) {
+        long bits = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        return (int) Math.floorMod(bits ^ (bits >>> 32), (long) count);
+    }
+}
@@ -0,0 +1,59 @@
+package com.buildmode.utils;
+
+/**
+ * Precomputed mm:ss labels for countdowns.
+ * <p>
+ * Countdowns are shown to every builder once a second, so formatting each one with
+ * {@link String#format} adds up. The labels for the first hundred minutes are built
+ * once and shared instead; longer times only occur with unusually long sessions or
+ * cooldowns and are put together on demand.
+ */
+public final class TimeLabels {
+    
+    /**
+     * The largest number of seconds with a precomputed label, 99:59.
+     */
+    public static final int MAX_PRECOMPUTED_SECONDS = 100 * 60 - 1;
+    
+    private static final String[] LABELS = new String[MAX_PRECOMPUTED_SECONDS + 1];
+    
+    static {
+        for (int seconds = 0; seconds <= MAX_PRECOMPUTED_SECONDS; seconds++) {
+            LABELS[seconds] = pad(seconds / 60) + ":" + pad(seconds % 60);
+        }
+    }
+    
+    /**
+     * Not instantiable.
+     */
+    private TimeLabels() {
+    }
+    
+    /**
+     * Gets the label of a time.
+     * 
+     * @param seconds The time in seconds, negative times count as zero
+     * @return The time as mm:ss
+     */
+    public static String format(int seconds) {
+        if (seconds <= 0) {
+            return LABELS[0];
+        }
+        
+        if (seconds <= MAX_PRECOMPUTED_SECONDS) {
+            return LABELS[seconds];
+        }
+        
+        return (seconds / 60) + ":" + pad(seconds % 60);
+    }
+    
+    /**
+     * Pads a number to two digits.
+     * 
+     * @param value The number, at least zero
+     * @return The number with a leading zero if it has only one digit
+     */
+    private static String pad(int value) {
+        return value < 10 ? "0" + value : Integer.toString(value);
+    }
+}
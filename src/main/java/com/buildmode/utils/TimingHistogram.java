@@ -0,0 +1,119 @@
+package com.buildmode.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of how long a repeating task takes per run.
+ * <p>
+ * Durations are counted in buckets that double in width, starting below one
+ * microsecond, so recording a run is one increment and the histogram has a fixed
+ * size. It can be written and read from any thread, so tasks running on several
+ * regions can share one histogram, and an admin command can read it to see both the
+ * typical cost of a run and how far the slow runs stick out.
+ */
+public final class TimingHistogram {
+    
+    /**
+     * The number of buckets. The last one holds everything from about half a second up.
+     */
+    public static final int BUCKETS = 21;
+    
+    private final AtomicLongArray counts;
+    private final AtomicLong max;
+    
+    /**
+     * Creates a new, empty histogram.
+     */
+    public TimingHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.max = new AtomicLong();
+    }
+    
+    /**
+     * Records the duration of one run.
+     * 
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+    
+    /**
+     * Gets the number of runs in a bucket.
+     * 
+     * @param bucket The bucket index
+     * @return The number of runs
+     */
+    public long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+    
+    /**
+     * Gets the exclusive upper bound of a bucket.
+     * 
+     * @param bucket The bucket index
+     * @return The upper bound in microseconds, or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getUpperBoundMicros(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+    
+    /**
+     * Gets the total number of recorded runs.
+     * 
+     * @return The number of runs
+     */
+    public long getTotal() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+    
+    /**
+     * Gets the upper bound of the bucket that holds a percentile of the runs.
+     * 
+     * @param percentile The percentile, between 0 and 100
+     * @return The upper bound in microseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = getTotal();
+        if (total == 0) {
+            return 0;
+        }
+        
+        long target = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return getUpperBoundMicros(i);
+            }
+        }
+        return getUpperBoundMicros(BUCKETS - 1);
+    }
+    
+    /**
+     * Gets the longest recorded run.
+     * 
+     * @return The duration in microseconds
+     */
+    public long getMaxMicros() {
+        return max.get() / 1000;
+    }
+    
+    /**
+     * Forgets all recorded runs.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+}
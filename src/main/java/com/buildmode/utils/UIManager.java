@@ -1,28 +1,63 @@
 package com.buildmode.utils;
 
 import com.buildmode.BuildMode;
+import com.buildmode.managers.SessionRegistry;
 import com.buildmode.models.BuildSession;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.kyori.adventure.bossbar.BossBar;
 import org.bukkit.Bukkit;
-import org.bukkit.boss.BarColor;
-import org.bukkit.boss.BarStyle;
-import org.bukkit.boss.BossBar;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitTask;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Manages UI elements for the BuildMode plugin.
+ * <p>
+ * The update task runs on the global region and only decides what to update; each
+ * player's boss bar is changed on that player's own scheduler. The task runs every
+ * tick but only visits one of twenty groups of players, so each player is still
+ * updated once a second while the work is spread evenly over the ticks. The boss bar
+ * and the optional sidebar share that schedule and both only send what changed.
  */
 public class UIManager {
     
+    /**
+     * The number of distinct boss bar progress values sent, the width of the bar in
+     * pixels on the client.
+     */
+    private static final int PROGRESS_STEPS = 182;
+    
+    /**
+     * The number of ticks between two updates of a player's UI elements.
+     */
+    private static final int UPDATE_INTERVAL_TICKS = 20;
+    
+    private static final Component SIDEBAR_TITLE = Component.text("Build Mode", NamedTextColor.GOLD);
+    
+    private static final Component[] TITLES = new Component[TimeLabels.MAX_PRECOMPUTED_SECONDS + 1];
+    
+    /**
+     * The number of titles kept for times longer than the precomputed labels, a power
+     * of two. Sessions whose remaining times are less than this many seconds apart
+     * share their titles.
+     */
+    private static final int LONG_TITLE_CACHE_SIZE = 1024;
+    
+    private static final LongTitle[] LONG_TITLES = new LongTitle[LONG_TITLE_CACHE_SIZE];
+    
     private final BuildMode plugin;
-    private final Map<UUID, BossBar> bossBars;
-    private BukkitTask updateTask;
+    private final Map<UUID, BossBarView> bossBars;
+    private final Map<UUID, Sidebar> sidebars;
+    private final TickBuckets buckets;
+    private final TimingHistogram timings;
+    private final TimingHistogram playerTimings;
+    private ScheduledTask updateTask;
+    private volatile boolean sidebarsUnsupported;
     
     /**
      * Creates a new UI manager.
@@ -31,7 +66,11 @@ public class UIManager {
      */
     public UIManager(BuildMode plugin) {
         this.plugin = plugin;
-        this.bossBars = new HashMap<>();
+        this.bossBars = new ConcurrentHashMap<>();
+        this.sidebars = new ConcurrentHashMap<>();
+        this.buckets = new TickBuckets(UPDATE_INTERVAL_TICKS);
+        this.timings = new TimingHistogram();
+        this.playerTimings = new TimingHistogram();
         startUpdateTask();
     }
     
@@ -44,37 +83,79 @@ public class UIManager {
             updateTask.cancel();
         }
         
-        // Start new task that runs every second
-        updateTask = Bukkit.getScheduler().runTaskTimer(plugin, this::updateUI, 20L, 20L);
+        // Start new task that runs every tick, each player's turn comes once a second
+        updateTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> updateUI(), 1L, 1L);
     }
     
     /**
-     * Updates all UI elements.
+     * Updates the UI elements of this tick's share of the players. Runs on the global
+     * region every tick.
      */
     private void updateUI() {
-        Map<UUID, BuildSession> sessions = plugin.getSessionManager().getActiveSessions();
+        long start = System.nanoTime();
+        SessionRegistry.Snapshot snapshot = plugin.getSessionManager().getSessionSnapshot();
+        Map<UUID, BuildSession> sessions = snapshot.sessions();
         
-        // Update boss bars for active sessions
-        for (Map.Entry<UUID, BuildSession> entry : sessions.entrySet()) {
-            UUID uuid = entry.getKey();
-            BuildSession session = entry.getValue();
-            Player player = Bukkit.getPlayer(uuid);
+        // Remove UI elements of sessions that ended since the last change
+        if (buckets.isStale(snapshot)) {
+            for (UUID uuid : bossBars.keySet()) {
+                if (!sessions.containsKey(uuid)) {
+                    removeLater(uuid, this::removeBossBar);
+                }
+            }
             
-            if (player != null && player.isOnline()) {
-                updateBossBar(player, session);
+            for (UUID uuid : sidebars.keySet()) {
+                if (!sessions.containsKey(uuid)) {
+                    removeLater(uuid, this::removeSidebar);
+                }
             }
         }
         
-        // Remove boss bars for inactive sessions
-        for (UUID uuid : bossBars.keySet().toArray(new UUID[0])) {
-            if (!sessions.containsKey(uuid)) {
-                removeBossBar(uuid);
+        // Update UI elements for active sessions
+        for (UUID uuid : buckets.next(snapshot)) {
+            BuildSession session = sessions.get(uuid);
+            Player player = Bukkit.getPlayer(uuid);
+            
+            if (player != null) {
+                player.getScheduler().run(plugin, task -> {
+                    long playerStart = System.nanoTime();
+                    updateBossBar(player, session);
+                    updateSidebar(player, session);
+                    playerTimings.record(System.nanoTime() - playerStart);
+                }, null);
             }
         }
+        
+        timings.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Gets the timings of the update task on the global region, one entry per tick.
+     * The task only schedules the updates, so this does not include their work.
+     * 
+     * @return The timing histogram
+     */
+    public TimingHistogram getTimings() {
+        return timings;
     }
     
     /**
-     * Updates the boss bar for a player.
+     * Gets the timings of the updates of single players, which build and send the
+     * boss bar and sidebar changes on the players' own threads. One entry per update.
+     * 
+     * @return The timing histogram
+     */
+    public TimingHistogram getPlayerTimings() {
+        return playerTimings;
+    }
+    
+    /**
+     * Updates the boss bar for a player. Runs on the player's thread.
+     * <p>
+     * Every change to a boss bar is a packet to the player, so only the fields whose
+     * shown value changed are set. The title changes once a second, the progress is
+     * rounded to the pixels the client can draw, and the color changes twice per
+     * session.
      * 
      * @param player The player
      * @param session The build session
@@ -86,44 +167,165 @@ public class UIManager {
             return;
         }
         
+        int remainingSeconds = session.getRemainingSeconds();
+        long totalDuration = session.getEndTime() - session.getStartTime();
+        double progress = totalDuration <= 0 ? 0 : (double) session.getRemainingTime() / totalDuration;
+        int progressStep = (int) Math.ceil(Math.max(0, Math.min(1, progress)) * PROGRESS_STEPS);
+        BossBar.Color color = remainingSeconds <= 60 ? BossBar.Color.RED :
+                remainingSeconds <= 300 ? BossBar.Color.YELLOW : BossBar.Color.GREEN;
+        
         UUID uuid = player.getUniqueId();
-        BossBar bossBar = bossBars.get(uuid);
+        BossBarView view = bossBars.get(uuid);
+        
+        // A view left over from before the player relogged belongs to the old player object
+        if (view != null && view.player != player) {
+            removeBossBar(uuid);
+            view = null;
+        }
         
         // Create boss bar if it doesn't exist
-        if (bossBar == null) {
-            bossBar = Bukkit.createBossBar(
-                    "Build Mode",
-                    BarColor.GREEN,
-                    BarStyle.SOLID
-            );
-            bossBar.addPlayer(player);
-            bossBars.put(uuid, bossBar);
+        if (view == null) {
+            view = new BossBarView(player, BossBar.bossBar(title(remainingSeconds),
+                    (float) progressStep / PROGRESS_STEPS, color, BossBar.Overlay.PROGRESS));
+            view.seconds = remainingSeconds;
+            view.progressStep = progressStep;
+            view.color = color;
+            bossBars.put(uuid, view);
+            player.showBossBar(view.bar);
+            return;
         }
         
-        // Update boss bar
-        int remainingSeconds = session.getRemainingSeconds();
-        int minutes = remainingSeconds / 60;
-        int seconds = remainingSeconds % 60;
+        if (view.seconds != remainingSeconds) {
+            view.seconds = remainingSeconds;
+            view.bar.name(title(remainingSeconds));
+        }
         
-        // Format time as mm:ss
-        String timeString = String.format("%02d:%02d", minutes, seconds);
+        if (view.progressStep != progressStep) {
+            view.progressStep = progressStep;
+            view.bar.progress((float) progressStep / PROGRESS_STEPS);
+        }
         
-        // Update title
-        bossBar.setTitle(Component.translatable("Build Mode: %s", Component.text(timeString)).color(NamedTextColor.GOLD).toString());
+        if (view.color != color) {
+            view.color = color;
+            view.bar.color(color);
+        }
+    }
+    
+    /**
+     * Gets the boss bar title for a remaining time. Titles are built the first time
+     * they are needed and then shared by all players. Titles of long sessions, beyond
+     * 99:59, are kept in a small cache indexed by the time, so they are shared too
+     * without keeping one for every second a session could last.
+     * 
+     * @param seconds The remaining time in seconds
+     * @return The title
+     */
+    private static Component title(int seconds) {
+        if (seconds > TimeLabels.MAX_PRECOMPUTED_SECONDS) {
+            int slot = seconds & (LONG_TITLE_CACHE_SIZE - 1);
+            LongTitle cached = LONG_TITLES[slot];
+            if (cached != null && cached.seconds() == seconds) {
+                return cached.title();
+            }
+            
+            Component title = Component.text("Build Mode: " + TimeLabels.format(seconds), NamedTextColor.GOLD);
+            LONG_TITLES[slot] = new LongTitle(seconds, title);
+            return title;
+        }
         
-        // Update progress
-        long totalDuration = session.getEndTime() - session.getStartTime();
-        long remaining = session.getRemainingTime();
-        double progress = (double) remaining / totalDuration;
-        bossBar.setProgress(Math.max(0, Math.min(1, progress)));
-        
-        // Update color based on remaining time
-        if (remainingSeconds <= 60) {
-            bossBar.setColor(BarColor.RED);
-        } else if (remainingSeconds <= 300) {
-            bossBar.setColor(BarColor.YELLOW);
+        seconds = Math.max(0, seconds);
+        
+        // Components are immutable, so racing threads at worst build the same title twice
+        Component title = TITLES[seconds];
+        if (title == null) {
+            title = Component.text("Build Mode: " + TimeLabels.format(seconds), NamedTextColor.GOLD);
+            TITLES[seconds] = title;
+        }
+        return title;
+    }
+    
+    /**
+     * Updates the sidebar for a player. Runs on the player's thread.
+     * 
+     * @param player The player
+     * @param session The build session
+     */
+    private void updateSidebar(Player player, BuildSession session) {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        UUID uuid = player.getUniqueId();
+        
+        if (!config.scoreboard() || sidebarsUnsupported) {
+            removeSidebar(uuid);
+            return;
+        }
+        
+        Sidebar sidebar = sidebars.get(uuid);
+        
+        // A sidebar left over from before the player relogged is on a scoreboard nobody sees
+        if (sidebar != null && !sidebar.isShownTo(player)) {
+            removeSidebar(uuid);
+            sidebar = null;
+        }
+        
+        // Create sidebar if it doesn't exist
+        if (sidebar == null) {
+            try {
+                sidebar = new Sidebar(player, SIDEBAR_TITLE, "Time left: ", "Cooldown length: ", "Blocks placed: ", "Mode: ");
+            } catch (UnsupportedOperationException e) {
+                // Folia has no scoreboards
+                sidebarsUnsupported = true;
+                plugin.getLogger().warning("This server does not support scoreboards, the build mode sidebar is disabled.");
+                return;
+            }
+            sidebars.put(uuid, sidebar);
+        }
+        
+        // Only lines whose value changed are sent
+        sidebar.setValue(0, TimeLabels.format(session.getRemainingSeconds()));
+        sidebar.setValue(1, TimeLabels.format(config.cooldownMinutes() * 60));
+        sidebar.setValue(2, Integer.toString(session.getBlocksPlaced()));
+        sidebar.setValue(3, config.useBlacklist() ? "Blacklist" : "Whitelist");
+    }
+    
+    /**
+     * Removes a UI element of a player on the player's thread, or right away if they
+     * are offline.
+     * 
+     * @param uuid The player's UUID
+     * @param removal The removal to run
+     */
+    private void removeLater(UUID uuid, Consumer<UUID> removal) {
+        Player player = Bukkit.getPlayer(uuid);
+        
+        if (player != null) {
+            player.getScheduler().run(plugin, task -> removal.accept(uuid), () -> removal.accept(uuid));
         } else {
-            bossBar.setColor(BarColor.GREEN);
+            removal.accept(uuid);
+        }
+    }
+    
+    /**
+     * Removes the UI elements of a player who quits. Their session stays active while
+     * they are offline, so the elements are created anew for the new player object
+     * when they rejoin. Runs on the player's thread.
+     * 
+     * @param uuid The player's UUID
+     */
+    public void remove(UUID uuid) {
+        removeBossBar(uuid);
+        removeSidebar(uuid);
+    }
+    
+    /**
+     * Removes the sidebar for a player.
+     * 
+     * @param uuid The player's UUID
+     */
+    private void removeSidebar(UUID uuid) {
+        Sidebar sidebar = sidebars.remove(uuid);
+        
+        if (sidebar != null) {
+            sidebar.hide();
         }
     }
     
@@ -133,19 +335,34 @@ public class UIManager {
      * @param uuid The player's UUID
      */
     private void removeBossBar(UUID uuid) {
-        BossBar bossBar = bossBars.remove(uuid);
+        BossBarView view = bossBars.remove(uuid);
         
-        if (bossBar != null) {
-            bossBar.removeAll();
+        if (view != null) {
+            view.player.hideBossBar(view.bar);
         }
     }
     
     /**
-     * Reloads the UI manager.
+     * Applies a new configuration to the UI manager. The update task runs every tick
+     * whatever the settings are, so it keeps running.
+     * 
+     * @param previous The previous configuration
+     * @param current The new configuration
      */
-    public void reload() {
-        // Restart update task
-        startUpdateTask();
+    public void reload(ConfigSnapshot previous, ConfigSnapshot current) {
+        // Hide the boss bars right away instead of with each player's next update
+        if (previous.bossBar() && !current.bossBar()) {
+            for (UUID uuid : bossBars.keySet()) {
+                removeLater(uuid, this::removeBossBar);
+            }
+        }
+        
+        // Hide the sidebars the same way
+        if (previous.scoreboard() && !current.scoreboard()) {
+            for (UUID uuid : sidebars.keySet()) {
+                removeLater(uuid, this::removeSidebar);
+            }
+        }
     }
     
     /**
@@ -159,10 +376,49 @@ public class UIManager {
         }
         
         // Remove all boss bars
-        for (BossBar bossBar : bossBars.values()) {
-            bossBar.removeAll();
+        for (BossBarView view : bossBars.values()) {
+            view.player.hideBossBar(view.bar);
         }
         
         bossBars.clear();
+        
+        // Remove all sidebars
+        for (Sidebar sidebar : sidebars.values()) {
+            sidebar.hide();
+        }
+        
+        sidebars.clear();
+    }
+    
+    /**
+     * A cached boss bar title of a long session.
+     * 
+     * @param seconds The remaining time in seconds
+     * @param title The title
+     */
+    private record LongTitle(int seconds, Component title) {
+    }
+    
+    /**
+     * A player's boss bar together with the values last sent to them.
+     */
+    private static final class BossBarView {
+        
+        private final Player player;
+        private final BossBar bar;
+        private int seconds;
+        private int progressStep;
+        private BossBar.Color color;
+        
+        /**
+         * Creates a new boss bar view.
+         * 
+         * @param player The player who sees the boss bar
+         * @param bar The boss bar
+         */
+        BossBarView(Player player, BossBar bar) {
+            this.player = player;
+            this.bar = bar;
+        }
     }
 }
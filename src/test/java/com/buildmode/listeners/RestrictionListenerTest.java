@@ -0,0 +1,161 @@
+package com.buildmode.listeners;
+
+import com.buildmode.BuildMode;
+import com.buildmode.managers.SessionManager;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Tests for the hopper path of {@link RestrictionListener}.
+ */
+class RestrictionListenerTest {
+    
+    private static final int TRANSFERS_PER_TICK = 10_000;
+    private static final int TICKS = 20;
+    
+    private final UUID builder = UUID.randomUUID();
+    private final AtomicLong holderLookups = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private RestrictionListener listener;
+    
+    @BeforeEach
+    void setUp() {
+        SessionManager sessionManager = mock(SessionManager.class);
+        when(sessionManager.isInBuildMode(builder)).thenReturn(true);
+        
+        BuildMode plugin = mock(BuildMode.class);
+        when(plugin.getSessionManager()).thenReturn(sessionManager);
+        
+        listener = new RestrictionListener(plugin);
+    }
+    
+    /**
+     * Drives 10,000 hopper transfers per tick between containers, as on a large
+     * hopper farm, and counts how often an inventory holder is resolved. Resolving the
+     * holder of a block inventory snapshots its block state, so this must never
+     * happen on this path.
+     */
+    @Test
+    void hopperTransfersNeverResolveHolders() {
+        InventoryType[] types = { InventoryType.HOPPER, InventoryType.CHEST, InventoryType.FURNACE, InventoryType.DROPPER };
+        InventoryMoveItemEvent[] events = new InventoryMoveItemEvent[types.length];
+        for (int i = 0; i < types.length; i++) {
+            events[i] = hopperEvent(countingInventory(types[i]), countingInventory(InventoryType.HOPPER));
+        }
+        
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (int i = 0; i < TRANSFERS_PER_TICK; i++) {
+                listener.onInventoryMoveItem(events[i % events.length]);
+            }
+        }
+        
+        assertEquals(0, holderLookups.get());
+        assertEquals(0, cancelled.get());
+    }
+    
+    /**
+     * Moving items into or out of the inventory of a player in build mode is
+     * cancelled, and the holder is resolved without a snapshot.
+     */
+    @Test
+    void cancelsTransfersWithBuildModePlayers() {
+        Inventory hopper = countingInventory(InventoryType.HOPPER);
+        
+        InventoryMoveItemEvent into = moveEvent(hopper, playerInventory(builder));
+        listener.onInventoryMoveItem(into);
+        verify(into).setCancelled(true);
+        
+        InventoryMoveItemEvent outOf = moveEvent(playerInventory(builder), hopper);
+        listener.onInventoryMoveItem(outOf);
+        verify(outOf).setCancelled(true);
+        
+        InventoryMoveItemEvent survival = moveEvent(hopper, playerInventory(UUID.randomUUID()));
+        listener.onInventoryMoveItem(survival);
+        verify(survival, never()).setCancelled(true);
+        
+        verify(into.getDestination(), never()).getHolder();
+    }
+    
+    /**
+     * Creates an inventory that counts every holder lookup.
+     * 
+     * @param type The inventory type
+     * @return The inventory
+     */
+    private Inventory countingInventory(InventoryType type) {
+        Inventory inventory = mock(Inventory.class, withSettings().stubOnly());
+        when(inventory.getType()).thenReturn(type);
+        when(inventory.getHolder()).thenAnswer(invocation -> {
+            holderLookups.incrementAndGet();
+            return mock(InventoryHolder.class);
+        });
+        when(inventory.getHolder(anyBoolean())).thenAnswer(invocation -> {
+            holderLookups.incrementAndGet();
+            return mock(InventoryHolder.class);
+        });
+        return inventory;
+    }
+    
+    /**
+     * Creates the inventory of a player.
+     * 
+     * @param uuid The player's UUID
+     * @return The inventory
+     */
+    private static Inventory playerInventory(UUID uuid) {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(uuid);
+        
+        Inventory inventory = mock(Inventory.class);
+        when(inventory.getType()).thenReturn(InventoryType.PLAYER);
+        when(inventory.getHolder(false)).thenReturn(player);
+        return inventory;
+    }
+    
+    /**
+     * Creates an item move event for the load test, which counts cancellations
+     * instead of recording every call.
+     * 
+     * @param source The source inventory
+     * @param destination The destination inventory
+     * @return The event
+     */
+    private InventoryMoveItemEvent hopperEvent(Inventory source, Inventory destination) {
+        InventoryMoveItemEvent event = mock(InventoryMoveItemEvent.class, withSettings().stubOnly());
+        when(event.getSource()).thenReturn(source);
+        when(event.getDestination()).thenReturn(destination);
+        doAnswer(invocation -> cancelled.incrementAndGet()).when(event).setCancelled(true);
+        return event;
+    }
+    
+    /**
+     * Creates an item move event.
+     * 
+     * @param source The source inventory
+     * @param destination The destination inventory
+     * @return The event
+     */
+    private static InventoryMoveItemEvent moveEvent(Inventory source, Inventory destination) {
+        InventoryMoveItemEvent event = mock(InventoryMoveItemEvent.class);
+        when(event.getSource()).thenReturn(source);
+        when(event.getDestination()).thenReturn(destination);
+        return event;
+    }
+}
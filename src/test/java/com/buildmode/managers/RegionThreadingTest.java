@@ -0,0 +1,234 @@
+package com.buildmode.managers;
+
+import com.buildmode.BuildMode;
+import com.buildmode.models.BuildSession;
+import com.buildmode.models.SessionKey;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockSettings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Simulates region-threaded servers: several threads tick at the same time, each
+ * changing only what its region owns while looking up everything else.
+ * <p>
+ * Every tick is split in two by a barrier. In the first half all regions change and
+ * read concurrently; in the second half nothing changes, so every region can check
+ * that what it sees matches what all regions did.
+ */
+class RegionThreadingTest {
+    
+    private static final int REGIONS = 8;
+    private static final int TICKS = 100;
+    
+    /**
+     * Session lookups from every region see each region's changes, snapshot versions
+     * never go backwards, and a snapshot taken after the changes holds all of them.
+     */
+    @Test
+    void sessionRegistryUnderConcurrentTicks() throws Exception {
+        SessionRegistry registry = new SessionRegistry();
+        Map<UUID, BuildSession> expected = new ConcurrentHashMap<>();
+        CyclicBarrier barrier = new CyclicBarrier(REGIONS);
+        
+        runRegions(region -> {
+            Random random = new Random(region);
+            List<UUID> players = new ArrayList<>();
+            Map<UUID, BuildSession> sessions = new HashMap<>();
+            for (int i = 0; i < 64; i++) {
+                UUID uuid = new UUID(region, i);
+                players.add(uuid);
+                sessions.put(uuid, mock(BuildSession.class, stubOnly()));
+            }
+            
+            long lastVersion = -1;
+            for (int tick = 0; tick < TICKS; tick++) {
+                // Start and end sessions of this region's players, look up everyone
+                for (UUID uuid : players) {
+                    if (random.nextInt(4) != 0) {
+                        continue;
+                    }
+                    
+                    if (registry.contains(uuid)) {
+                        assertSame(sessions.get(uuid), registry.remove(uuid));
+                        expected.remove(uuid);
+                    } else {
+                        registry.put(uuid, sessions.get(uuid));
+                        expected.put(uuid, sessions.get(uuid));
+                    }
+                    assertSame(expected.get(uuid), registry.get(uuid));
+                }
+                
+                SessionRegistry.Snapshot snapshot = registry.snapshot();
+                assertTrue(snapshot.version() >= lastVersion, "Snapshot version went backwards");
+                lastVersion = snapshot.version();
+                snapshot.sessions().forEach((uuid, session) -> assertTrue(uuid != null && session != null));
+                
+                barrier.await(10, TimeUnit.SECONDS);
+                
+                // Nothing changes now, every region must see every change
+                assertEquals(expected, registry.snapshot().sessions());
+                assertEquals(expected.size(), registry.size());
+                
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+        });
+    }
+    
+    /**
+     * Regions record and remove placements in their own chunks of a shared world while
+     * another thread reads the memory statistics, and no placement is lost or mixed up.
+     */
+    @Test
+    void placementIndexUnderConcurrentTicks() throws Exception {
+        BuildMode plugin = mock(BuildMode.class, stubOnly());
+        when(plugin.getName()).thenReturn("BuildMode");
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("BuildMode"));
+        
+        World world = mock(World.class, stubOnly());
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getName()).thenReturn("world");
+        when(world.getMinHeight()).thenReturn(-64);
+        
+        PlacementIndex index = new PlacementIndex(plugin);
+        Map<Block, SessionKey> expected = new ConcurrentHashMap<>();
+        CyclicBarrier barrier = new CyclicBarrier(REGIONS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        
+        AtomicReference<Throwable> statisticsFailure = new AtomicReference<>();
+        
+        // The memory command reads the index from a thread of its own
+        Thread statistics = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    assertTrue(index.getLoadedBlockCount() >= 0);
+                    assertTrue(index.getMemoryUsage() >= 0);
+                    Thread.sleep(1);
+                }
+            } catch (Throwable e) {
+                statisticsFailure.set(e);
+            }
+        });
+        statistics.start();
+        
+        try {
+            runRegions(region -> {
+                Random random = new Random(region);
+                List<Block> blocks = new ArrayList<>();
+                for (int c = 0; c < 2; c++) {
+                    Chunk chunk = mock(Chunk.class, stubOnly());
+                    when(chunk.getPersistentDataContainer()).thenReturn(mock(PersistentDataContainer.class, stubOnly()));
+                    
+                    for (int i = 0; i < 64; i++) {
+                        Block block = mock(Block.class, stubOnly());
+                        when(block.getWorld()).thenReturn(world);
+                        when(block.getChunk()).thenReturn(chunk);
+                        when(block.getX()).thenReturn((region * 2 + c) * 16 + (i & 15));
+                        when(block.getY()).thenReturn(64 + (i >> 4));
+                        when(block.getZ()).thenReturn(-16 * region);
+                        blocks.add(block);
+                    }
+                }
+                
+                for (int tick = 0; tick < TICKS; tick++) {
+                    SessionKey session = new SessionKey(new UUID(region, 0), tick % 4);
+                    for (Block block : blocks) {
+                        if (random.nextInt(4) != 0) {
+                            continue;
+                        }
+                        
+                        if (random.nextBoolean()) {
+                            index.record(block, session);
+                            expected.put(block, session);
+                        } else {
+                            assertEquals(expected.remove(block), index.remove(block));
+                        }
+                    }
+                    
+                    for (Block block : blocks) {
+                        assertEquals(expected.get(block), index.getPlacer(block));
+                    }
+                    
+                    barrier.await(10, TimeUnit.SECONDS);
+                    assertEquals(expected.size(), index.getLoadedBlockCount());
+                    barrier.await(10, TimeUnit.SECONDS);
+                }
+            });
+        } finally {
+            running.set(false);
+            statistics.join();
+        }
+        
+        assertNull(statisticsFailure.get());
+    }
+    
+    /**
+     * Runs the same work on every region thread at once and rethrows the first
+     * failure.
+     * 
+     * @param work The work of one region, given the region's index
+     */
+    private static void runRegions(RegionWork work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(REGIONS);
+        try {
+            List<Future<?>> regions = new ArrayList<>();
+            for (int region = 0; region < REGIONS; region++) {
+                int index = region;
+                regions.add(executor.submit(() -> {
+                    work.run(index);
+                    return null;
+                }));
+            }
+            
+            for (Future<?> region : regions) {
+                region.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Settings for mocks that are called from many threads, without recording the
+     * calls.
+     * 
+     * @return The mock settings
+     */
+    private static MockSettings stubOnly() {
+        return withSettings().stubOnly();
+    }
+    
+    /**
+     * The work of one simulated region.
+     */
+    @FunctionalInterface
+    private interface RegionWork {
+        void run(int region) throws Exception;
+    }
+}
@@ -0,0 +1,223 @@
+package com.buildmode.storage;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+/**
+ * Round-trip tests for {@link ItemStackCodec}.
+ * <p>
+ * Item serialization needs a running server, so items are mocks that serialize to
+ * fixed bytes, and deserializing those bytes gives back the same mock.
+ */
+class ItemStackCodecTest {
+    
+    private final Map<String, ItemStack> serialized = new HashMap<>();
+    private MockedStatic<ItemStack> deserializer;
+    
+    @BeforeEach
+    void setUp() {
+        deserializer = mockStatic(ItemStack.class);
+        deserializer.when(() -> ItemStack.deserializeBytes(any())).thenAnswer(invocation -> {
+            ItemStack item = serialized.get(key(invocation.getArgument(0)));
+            if (item == null) {
+                throw new IllegalArgumentException("Unknown item data");
+            }
+            return item;
+        });
+    }
+    
+    @AfterEach
+    void tearDown() {
+        deserializer.close();
+    }
+    
+    /**
+     * Empty inventories only store their slot counts and decode to arrays of nulls.
+     */
+    @Test
+    void roundTripsEmptyInventories() throws IOException {
+        byte[] data = ItemStackCodec.encode(true, new ItemStack[36], new ItemStack[4], new ItemStack[1]);
+        
+        assertTrue(data.length <= 12, "Empty inventory took " + data.length + " bytes");
+        
+        ItemStack[][] decoded = ItemStackCodec.decode(data);
+        assertEquals(3, decoded.length);
+        assertArrayEquals(new ItemStack[36], decoded[0]);
+        assertArrayEquals(new ItemStack[4], decoded[1]);
+        assertArrayEquals(new ItemStack[1], decoded[2]);
+    }
+    
+    /**
+     * Runs of empty slots keep the items around them in place, and a null section
+     * decodes as an empty one.
+     */
+    @Test
+    void roundTripsNullRuns() throws IOException {
+        ItemStack first = item(1, 20);
+        ItemStack second = item(2, 20);
+        ItemStack[] section = { null, null, first, null, second, null, null, null };
+        
+        ItemStack[][] decoded = ItemStackCodec.decode(ItemStackCodec.encode(false, section, null));
+        
+        assertEquals(2, decoded.length);
+        assertArrayEquals(section, decoded[0]);
+        assertSame(first, decoded[0][2]);
+        assertSame(second, decoded[0][4]);
+        assertEquals(0, decoded[1].length);
+    }
+    
+    /**
+     * Stacks with no items count as empty slots.
+     */
+    @Test
+    void storesZeroAmountStacksAsEmpty() throws IOException {
+        ItemStack empty = mock(ItemStack.class);
+        when(empty.getType()).thenReturn(Material.STONE);
+        when(empty.getAmount()).thenReturn(0);
+        
+        ItemStack[][] decoded = ItemStackCodec.decode(ItemStackCodec.encode(false, new ItemStack[] { empty }));
+        
+        assertArrayEquals(new ItemStack[1], decoded[0]);
+    }
+    
+    /**
+     * Bodies above the deflate threshold are compressed when that makes them
+     * smaller, and decode to the same items.
+     */
+    @Test
+    void compressesBodiesAboveThreshold() throws IOException {
+        ItemStack[] inventory = new ItemStack[36];
+        for (int i = 0; i < inventory.length; i++) {
+            inventory[i] = item(i, 48);
+        }
+        
+        byte[] plain = ItemStackCodec.encode(false, inventory);
+        byte[] compressed = ItemStackCodec.encode(true, inventory);
+        
+        assertTrue(plain.length > 256);
+        assertEquals(0, plain[1]);
+        assertEquals(1, compressed[1]);
+        assertTrue(compressed.length < plain.length);
+        assertArrayEquals(inventory, ItemStackCodec.decode(compressed)[0]);
+    }
+    
+    /**
+     * Bodies that deflate would only make larger are stored as they are.
+     */
+    @Test
+    void keepsIncompressibleBodiesPlain() throws IOException {
+        Random random = new Random(42);
+        ItemStack[] inventory = new ItemStack[8];
+        for (int i = 0; i < inventory.length; i++) {
+            byte[] bytes = new byte[64];
+            random.nextBytes(bytes);
+            inventory[i] = item(bytes);
+        }
+        
+        byte[] data = ItemStackCodec.encode(true, inventory);
+        
+        assertEquals(0, data[1]);
+        assertArrayEquals(inventory, ItemStackCodec.decode(data)[0]);
+    }
+    
+    /**
+     * Data from another codec version is rejected.
+     */
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] data = ItemStackCodec.encode(false, new ItemStack[] { item(1, 20) });
+        data[0] = 2;
+        
+        assertThrows(IOException.class, () -> ItemStackCodec.decode(data));
+        assertThrows(IOException.class, () -> ItemStackCodec.decode(new byte[0]));
+    }
+    
+    /**
+     * Truncated and malformed data fail with an I/O error instead of decoding to
+     * wrong items.
+     */
+    @Test
+    void rejectsCorruptData() {
+        ItemStack[] inventory = new ItemStack[36];
+        for (int i = 0; i < inventory.length; i++) {
+            inventory[i] = item(i, 48);
+        }
+        byte[] compressed = ItemStackCodec.encode(true, inventory);
+        byte[] plain = ItemStackCodec.encode(false, inventory);
+        
+        // Truncated compressed and plain bodies
+        assertThrows(IOException.class, () -> ItemStackCodec.decode(Arrays.copyOf(compressed, compressed.length / 2)));
+        assertThrows(IOException.class, () -> ItemStackCodec.decode(Arrays.copyOf(plain, plain.length - 10)));
+        
+        // An empty slot run past the end of its section
+        assertThrows(IOException.class, () -> ItemStackCodec.decode(new byte[] { 1, 0, 1, 2, 0, 5 }));
+        
+        // Item bytes the server cannot deserialize
+        byte[] unknown = plain.clone();
+        unknown[plain.length - 1] ^= 0x55;
+        assertThrows(IOException.class, () -> ItemStackCodec.decode(unknown));
+    }
+    
+    /**
+     * Creates an item whose serialized form is a repetitive, compressible pattern,
+     * much like the NBT of real items.
+     * 
+     * @param id A number unique to the item
+     * @param length The length of the serialized form
+     * @return The item
+     */
+    private ItemStack item(int id, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) "minecraft:stone{count:1}".charAt(i % 24);
+        }
+        bytes[0] = (byte) id;
+        return item(bytes);
+    }
+    
+    /**
+     * Creates an item with a fixed serialized form.
+     * 
+     * @param bytes The serialized form
+     * @return The item
+     */
+    private ItemStack item(byte[] bytes) {
+        ItemStack item = mock(ItemStack.class);
+        when(item.getType()).thenReturn(Material.STONE);
+        when(item.getAmount()).thenReturn(1);
+        when(item.serializeAsBytes()).thenReturn(bytes);
+        serialized.put(key(bytes), item);
+        return item;
+    }
+    
+    /**
+     * Gets a map key for serialized item bytes.
+     * 
+     * @param bytes The bytes
+     * @return The key
+     */
+    private static String key(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
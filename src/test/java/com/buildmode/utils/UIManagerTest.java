@@ -0,0 +1,185 @@
+package com.buildmode.utils;
+
+import com.buildmode.BuildMode;
+import com.buildmode.managers.SessionManager;
+import com.buildmode.managers.SessionRegistry;
+import com.buildmode.models.BuildSession;
+import io.papermc.paper.threadedregions.scheduler.EntityScheduler;
+import io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.kyori.adventure.bossbar.BossBar;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests that {@link UIManager} only sends boss bar changes a player can see.
+ * <p>
+ * The player is an audience that counts boss bar packets: showing the bar, and every
+ * change of its title, progress or color.
+ */
+class UIManagerTest {
+    
+    private static final long DURATION_MILLIS = 60 * 60 * 1000L;
+    private static final int TICKS_PER_UPDATE = 20;
+    
+    private final UUID uuid = UUID.randomUUID();
+    private final SessionRegistry registry = new SessionRegistry();
+    private MockedStatic<Bukkit> bukkit;
+    private MockedStatic<BossBar> bossBars;
+    private Consumer<ScheduledTask> updateTask;
+    private long remainingMillis;
+    private int shown;
+    private int names;
+    private int progresses;
+    private int colors;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ConfigSnapshot config = mock(ConfigSnapshot.class);
+        ConfigManager configManager = mock(ConfigManager.class);
+        when(configManager.isBossBarEnabled()).thenReturn(true);
+        when(configManager.getSnapshot()).thenReturn(config);
+        
+        SessionManager sessionManager = mock(SessionManager.class);
+        when(sessionManager.getSessionSnapshot()).thenAnswer(invocation -> registry.snapshot());
+        
+        BuildMode plugin = mock(BuildMode.class);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        when(plugin.getSessionManager()).thenReturn(sessionManager);
+        
+        BuildSession session = mock(BuildSession.class);
+        when(session.getStartTime()).thenReturn(0L);
+        when(session.getEndTime()).thenReturn(DURATION_MILLIS);
+        when(session.getRemainingTime()).thenAnswer(invocation -> remainingMillis);
+        when(session.getRemainingSeconds()).thenAnswer(invocation -> (int) ((remainingMillis + 999) / 1000));
+        registry.put(uuid, session);
+        
+        // Tasks on the player's scheduler run right away
+        EntityScheduler playerScheduler = mock(EntityScheduler.class);
+        when(playerScheduler.run(any(), any(), any())).thenAnswer(invocation -> {
+            ((Consumer<ScheduledTask>) invocation.getArgument(1)).accept(mock(ScheduledTask.class));
+            return null;
+        });
+        
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(uuid);
+        when(player.getScheduler()).thenReturn(playerScheduler);
+        doAnswer(invocation -> shown++).when(player).showBossBar(any());
+        
+        BossBar bar = mock(BossBar.class);
+        when(bar.name(any())).thenAnswer(invocation -> {
+            names++;
+            return bar;
+        });
+        when(bar.progress(anyFloat())).thenAnswer(invocation -> {
+            progresses++;
+            return bar;
+        });
+        when(bar.color(any(BossBar.Color.class))).thenAnswer(invocation -> {
+            colors++;
+            return bar;
+        });
+        
+        GlobalRegionScheduler globalScheduler = mock(GlobalRegionScheduler.class);
+        bukkit = mockStatic(Bukkit.class);
+        bukkit.when(Bukkit::getGlobalRegionScheduler).thenReturn(globalScheduler);
+        bukkit.when(() -> Bukkit.getPlayer(uuid)).thenReturn(player);
+        
+        bossBars = mockStatic(BossBar.class);
+        bossBars.when(() -> BossBar.bossBar(any(), anyFloat(), any(), any())).thenReturn(bar);
+        
+        new UIManager(plugin);
+        
+        ArgumentCaptor<Consumer<ScheduledTask>> task = ArgumentCaptor.forClass(Consumer.class);
+        verify(globalScheduler).runAtFixedRate(eq(plugin), task.capture(), anyLong(), anyLong());
+        updateTask = task.getValue();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        bossBars.close();
+        bukkit.close();
+    }
+    
+    /**
+     * Updates with the same remaining time send nothing after the bar is shown.
+     */
+    @Test
+    void sendsNothingWhenNothingChanged() {
+        remainingMillis = DURATION_MILLIS / 2;
+        
+        runUpdates(10);
+        
+        assertEquals(1, shown);
+        assertEquals(0, names + progresses + colors);
+    }
+    
+    /**
+     * A second passing changes the title, but the progress only changes once it
+     * moves the bar by a pixel.
+     */
+    @Test
+    void sendsOnlyChangedFields() {
+        remainingMillis = DURATION_MILLIS / 2;
+        runUpdates(1);
+        
+        // One hour over 182 pixels, so the bar moves by a pixel about every 20 seconds
+        for (int i = 0; i < 60; i++) {
+            remainingMillis -= 1000;
+            runUpdates(1);
+        }
+        
+        assertEquals(1, shown);
+        assertEquals(60, names);
+        assertEquals(3, progresses);
+        assertEquals(0, colors);
+    }
+    
+    /**
+     * The color changes only when the remaining time crosses a threshold.
+     */
+    @Test
+    void sendsColorOnlyAtThresholds() {
+        remainingMillis = 302_000;
+        runUpdates(1);
+        
+        for (int i = 0; i < 4; i++) {
+            remainingMillis -= 1000;
+            runUpdates(1);
+        }
+        
+        assertEquals(1, colors);
+    }
+    
+    /**
+     * Runs the update task for enough ticks that every player is updated the given
+     * number of times.
+     * 
+     * @param updates The number of updates per player
+     */
+    private void runUpdates(int updates) {
+        for (int tick = 0; tick < updates * TICKS_PER_UPDATE; tick++) {
+            updateTask.accept(mock(ScheduledTask.class));
+        }
+    }
+}